@@ -11,12 +11,18 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.left.addd.AdddGame.Screens;
 import com.left.addd.model.GameModel;
+import com.left.addd.model.Simulation;
+import com.left.addd.model.SynchronousSimulation;
+import com.left.addd.model.pathfinding.PathBudget;
+import com.left.addd.model.pathfinding.PathSolver;
+import com.left.addd.model.pathfinding.SynchronousPathSolver;
 import com.left.addd.screens.AbstractScreen;
 import com.left.addd.screens.LoadScreen;
 import com.left.addd.screens.MainMenuScreen;
 import com.left.addd.screens.OptionsScreen;
 import com.left.addd.screens.SplashScreen;
 import com.left.addd.screens.GameScreen;
+import com.left.addd.services.EntityPlanner;
 import com.left.addd.services.MusicManager;
 import com.left.addd.services.PreferenceManager;
 import com.left.addd.services.SoundManager;
@@ -25,6 +31,8 @@ import com.left.addd.utils.LoadingException;
 
 public class AdddGame extends Game implements ApplicationListener {
 	public static final boolean DEVMODE = true;
+	/** Seconds between reports of the path budget use in DEVMODE */
+	private static final float PATH_REPORT_INTERVAL = 5f;
 
 	private Screens nextScreen;
 	private int nextScreenState;
@@ -32,11 +40,57 @@ public class AdddGame extends Game implements ApplicationListener {
 	private GameSerializer gameSerializer;
 	private MusicManager musicManager;
 	private SoundManager soundManager;
+	private final PathSolver.Factory pathSolvers;
+	private final Simulation.Factory simulations;
+	/** Plans the entities arriving on a tick all at once, or null to update them one after the other */
+	private final EntityPlanner.Factory entityPlanners;
+	/** Per frame limit on searching, or null if the path solver doesn't use the render thread */
+	private final PathBudget pathBudget;
+	private float pathReportTimer;
+	/** Whether every game session is recorded, to be replayed later */
+	private boolean recording;
 
 	public static enum Screens {
 		SPLASH, MAINMENU, OPTIONS, LOAD, GAME;
 	}
 
+	/**
+	 * Paths are searched on the render thread, a little every frame.
+	 */
+	public AdddGame() {
+		this.pathBudget = new PathBudget();
+		this.pathSolvers = new SynchronousPathSolver.Factory(pathBudget);
+		this.simulations = new SynchronousSimulation.Factory();
+		this.entityPlanners = null;
+	}
+
+	/**
+	 * @param pathSolvers Makes the path solver of every game, so platforms with threads can use them.
+	 */
+	public AdddGame(PathSolver.Factory pathSolvers) {
+		this(pathSolvers, new SynchronousSimulation.Factory());
+	}
+
+	/**
+	 * @param pathSolvers Makes the path solver of every game, so platforms with threads can use them.
+	 * @param simulations Makes what runs every game, for example on a thread of its own.
+	 */
+	public AdddGame(PathSolver.Factory pathSolvers, Simulation.Factory simulations) {
+		this(pathSolvers, simulations, null);
+	}
+
+	/**
+	 * @param pathSolvers Makes the path solver of every game, so platforms with threads can use them.
+	 * @param simulations Makes what runs every game, for example on a thread of its own.
+	 * @param entityPlanners Makes what plans the entities of every game all at once, or null to update them in turn.
+	 */
+	public AdddGame(PathSolver.Factory pathSolvers, Simulation.Factory simulations, EntityPlanner.Factory entityPlanners) {
+		this.pathBudget = null;
+		this.pathSolvers = pathSolvers;
+		this.simulations = simulations;
+		this.entityPlanners = entityPlanners;
+	}
+
 	public void setNextScreen(Screens s) {
 		nextScreen = s;
 	}
@@ -103,6 +157,40 @@ public class AdddGame extends Game implements ApplicationListener {
 		return soundManager;
 	}
 
+	public PathSolver.Factory getPathSolvers() {
+		return pathSolvers;
+	}
+
+	public Simulation.Factory getSimulations() {
+		return simulations;
+	}
+
+	/**
+	 * @return Makes the entity planner of every game, or null if entities are updated one after the other.
+	 */
+	public EntityPlanner.Factory getEntityPlanners() {
+		return entityPlanners;
+	}
+
+	public boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * @param recording Whether to write down what the player does in every game from now on,
+	 *        see {@link com.left.addd.model.Recording}. Each session is saved to a file of its own when it ends.
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+
+	/**
+	 * @return Per frame limit on searching paths, or null if paths are searched on other threads.
+	 */
+	public PathBudget getPathBudget() {
+		return pathBudget;
+	}
+
 	@Override
 	public void create() {
 		log("Create Game");
@@ -118,6 +206,11 @@ public class AdddGame extends Game implements ApplicationListener {
 		soundManager.setEnabled(preferenceManager.isSoundOn());
 		soundManager.setVolume(preferenceManager.getSoundVolume());
 
+		if(pathBudget != null) {
+			pathBudget.set(0, getPathMicrosPerFrame());
+		}
+		pathReportTimer = 0;
+
 		nextScreen = null;
 		nextScreenState = -1;
 		setScreen(Screens.SPLASH);
@@ -127,6 +220,15 @@ public class AdddGame extends Game implements ApplicationListener {
 	public void render() {
 		super.render();
 
+		if(DEVMODE && pathBudget != null) {
+			pathReportTimer += Gdx.graphics.getDeltaTime();
+			if(pathReportTimer >= PATH_REPORT_INTERVAL) {
+				log("Paths", pathBudget.toString());
+				pathBudget.resetUsage();
+				pathReportTimer = 0;
+			}
+		}
+
 		if(nextScreen != null) {
 			setScreen(nextScreen);
 			nextScreen = null;
@@ -144,6 +246,28 @@ public class AdddGame extends Game implements ApplicationListener {
 		super.dispose();
 	}
 	
+	/**
+	 * How long path searches may take each frame on this platform.
+	 * Tune these with the budget use logged in DEVMODE.
+	 *
+	 * @return Microseconds per frame, 0 for no limit
+	 */
+	public static int getPathMicrosPerFrame() {
+		switch(Gdx.app.getType()) {
+		case Desktop:
+		case Applet:
+			// plenty of time, but desktops normally search on worker threads anyway
+			return 0;
+		case WebGL:
+			return 2000;
+		case Android:
+		case iOS:
+			return 1500;
+		default:
+			return 2000;
+		}
+	}
+
 	/**
 	 * Let UI elements be scaled by this value.
 	 * This allows buttons to be big enough to touch.
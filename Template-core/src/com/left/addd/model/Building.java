@@ -29,10 +29,12 @@ public class Building extends Entity {
 		this.type = type;
 	}
 
+	@Override
 	public int getWidth() {
 		return type.width;
 	}
 
+	@Override
 	public int getHeight() {
 		return type.height;
 	}
@@ -52,8 +54,9 @@ public class Building extends Entity {
 	@Override
 	public void save(Json json) {
 		json.writeObjectStart("building");
-		json.writeValue("x", this.currentTile.x);
-		json.writeValue("y", this.currentTile.y);
+		Tile tile = getCurrentTile();
+		json.writeValue("x", tile.x);
+		json.writeValue("y", tile.y);
 		json.writeValue("entity_type", "building");
 		json.writeValue("building_type", this.type.name());
 		json.writeObjectEnd();
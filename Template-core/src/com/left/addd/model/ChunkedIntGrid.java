@@ -0,0 +1,65 @@
+package com.left.addd.model;
+
+import java.util.Arrays;
+
+/**
+ * An int for every tile of a map, cut into the same chunks as the {@link WorldGrid}.
+ * Chunks holding nothing but the default value share one chunk that is never written
+ * and only get one of their own on the first write of another value,
+ * so bookkeeping for the roads of a big empty map stays about as small as the roads.
+ */
+public class ChunkedIntGrid {
+	private static final int CHUNK_SHIFT = WorldGrid.CHUNK_SHIFT;
+	private static final int CHUNK_MASK = WorldGrid.CHUNK_SIZE - 1;
+	private static final int CHUNK_TILES = WorldGrid.CHUNK_SIZE * WorldGrid.CHUNK_SIZE;
+
+	private final int width;
+	private final int chunksX;
+	private final int defaultValue;
+	/** Shared by every chunk holding only the default value, never written */
+	private final int[] empty;
+	private final int[][] chunks;
+
+	public ChunkedIntGrid(int width, int height, int defaultValue) {
+		this.width = width;
+		this.chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+		int chunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+		this.defaultValue = defaultValue;
+		this.empty = new int[CHUNK_TILES];
+		Arrays.fill(empty, defaultValue);
+		this.chunks = new int[chunksX * chunksY][];
+		clear();
+	}
+
+	public int get(int tile) {
+		return chunks[chunk(tile)][offset(tile)];
+	}
+
+	public void set(int tile, int value) {
+		int c = chunk(tile);
+		int[] chunk = chunks[c];
+		if(chunk == empty) {
+			if(value == defaultValue) {
+				return;
+			}
+			chunk = empty.clone();
+			chunks[c] = chunk;
+		}
+		chunk[offset(tile)] = value;
+	}
+
+	/**
+	 * Sets every tile back to the default value, letting go of all the chunks.
+	 */
+	public void clear() {
+		Arrays.fill(chunks, empty);
+	}
+
+	private int chunk(int tile) {
+		return ((tile % width) >> CHUNK_SHIFT) + ((tile / width) >> CHUNK_SHIFT) * chunksX;
+	}
+
+	private int offset(int tile) {
+		return ((tile % width) & CHUNK_MASK) | ((tile / width) & CHUNK_MASK) << CHUNK_SHIFT;
+	}
+}
@@ -2,6 +2,23 @@ package com.left.addd.model;
 
 public enum Direction {
 	NORTH, EAST, SOUTH, WEST;
+
+	/** values() makes a new array every call */
+	private static final Direction[] VALUES = values();
+
+	/**
+	 * @return The Direction with that ordinal, without the copy values() makes.
+	 */
+	public static Direction get(int ordinal) {
+		return VALUES[ordinal];
+	}
+
+	/**
+	 * @return This direction's bit in a connection mask.
+	 */
+	public int bit() {
+		return 1 << ordinal();
+	}
 	
 	public Direction opposite() {
 		switch(this) {
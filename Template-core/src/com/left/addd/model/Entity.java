@@ -3,84 +3,163 @@ package com.left.addd.model;
 import static com.left.addd.utils.Log.log;
 import static com.left.addd.utils.Log.pCoords;
 
-import java.util.PriorityQueue;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
+import com.left.addd.model.pathfinding.FlowField;
+import com.left.addd.model.pathfinding.IncrementalPlanner;
+import com.left.addd.model.pathfinding.Path;
+import com.left.addd.model.pathfinding.PathFinder;
+import com.left.addd.model.pathfinding.PathRequest;
 
 public class Entity {
+	// What to do on arrival, as planned ahead
+	private static final int PLAN_NONE = 0;
+	private static final int PLAN_CLEAR = 1;
+	private static final int PLAN_STAY = 2;
+	private static final int PLAN_STEP = 3;
+	private static final int PLAN_FLOW = 4;
 
-	protected Tile currentTile;
-	private Tile nextTile;
-
-	/** Number of ticks to move to an adjacent tile */
-	private int moveDuration;
-	private int moveProgress;
+	/** Holds where the entity is, how it moves and what it heads for, in the slot of id */
+	private final EntityStore store;
+	private final int id;
 
 	// this is willis's 11am event handling implementation
+	/** Almost every entity only has its EntityManager listening, so the list is only made for a second listener */
+	private StateChangedListener<Entity> listener;
 	private List<StateChangedListener<Entity>> listeners;
 	
-	/**
-	 * Metadata of the entity (used to store strings, sprite dimension info etc)
-	 */
-	private final HashMap<String,Object> mMetadata;
-	
-	private HashMap<Entity,Entity> mObjectives;
+	// Objectives are kept in the EntityStore, in the order they were added,
+	// so the nearest of several objectives and ties go the same way every run
 	
-	private Entity mTargetEntity;
+	/** Route towards the target entity, kept until the network or the target's tile changes. Made for the first route */
+	private Path path;
+	/** Asks for the next route when path has gone stale. Made with the first request */
+	private PathRequest request;
+	/** Keeps the search behind path when the PathFinder is in incremental mode */
+	private IncrementalPlanner planner;
+
+	/** What {@link #plan()} decided the next update does on arrival, one of the PLAN_ constants */
+	private int plan;
+	/** Tile of the target entity the plan was made for */
+	private int planGoal;
+	/** Tile a PLAN_FLOW steps to */
+	private int planNext;
 
 	public Entity(Tile currentTile) {
 		
-		this.currentTile = currentTile;
-		this.nextTile = currentTile;
+		this.store = currentTile.gameModel.getEntityStore();
+		this.id = store.add(this, currentTile.getId());
+		plan = PLAN_NONE;
+	}
 
-		this.moveDuration = 1;
-		this.moveProgress = 0;
-		this.listeners = new ArrayList<StateChangedListener<Entity>>(1);
-		
-		mMetadata = new HashMap<String,Object>();
-		mObjectives = new HashMap<Entity,Entity>();
-		mTargetEntity = null;
+	/**
+	 * @return Id of the entity in its model's {@link EntityStore}.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public EntityStore getStore() {
+		return store;
 	}
 
+	/**
+	 * @return A view of the tile the entity stands on, made for the call. Use {@link #getCurrentTileId()}
+	 *         where only the tile id is needed.
+	 */
 	public Tile getCurrentTile() {
-		return currentTile;
+		return store.gameModel.getTile(store.current[id]);
+	}
+
+	public int getCurrentTileId() {
+		return store.current[id];
 	}
 
 	public void setCurrentTile(Tile t) {
-		this.currentTile = t;
+		store.current[id] = t.getId();
 		stateChanged();
 	}
 
+	/**
+	 * @return A view of the tile the entity is moving to, made for the call.
+	 */
 	public Tile getNextTile() {
-		return nextTile;
+		return store.gameModel.getTile(store.next[id]);
+	}
+
+	public int getNextTileId() {
+		return store.next[id];
 	}
 
 	public void setNextTile(Tile t) {
 		// make this private, it should be determined by a pathfinder
-		this.nextTile = t;
+		store.next[id] = t.getId();
 		stateChanged();
 	}
 
+	/**
+	 * @return Width in tiles of the ground the entity stands on, from its current tile to the right.
+	 */
+	public int getWidth() {
+		return 1;
+	}
+
+	/**
+	 * @return Height in tiles of the ground the entity stands on, from its current tile upwards.
+	 */
+	public int getHeight() {
+		return 1;
+	}
+
 	public int getMoveDuration() {
-		return moveDuration;
+		return store.moveDuration[id];
 	}
 
 	public void setMoveDuration(int speed) {
-		this.moveDuration = speed;
+		store.moveDuration[id] = speed;
+		stateChanged();
 	}
 
+	/**
+	 * @return Ticks into the current move as of the last update. Entities are only updated
+	 *         on the tick they arrive, so this is usually behind in between.
+	 */
 	public int getMoveProgress() {
-		return moveProgress;
+		return store.moveProgress[id];
+	}
+
+	/**
+	 * @return true if the entity has nothing to do until it is given a target or an objective:
+	 *         it stands still, without either.
+	 */
+	public boolean isParked() {
+		return store.target[id] == EntityStore.NONE && !hasObjectives() && store.next[id] == store.current[id];
 	}
 
 	public void addStateChangedListener(StateChangedListener<Entity> listener) {
-		if (!listeners.contains(listener)) {
-			this.listeners.add(listener);
-			listener.OnStateChanged(this);
+		if (this.listener == listener || (listeners != null && listeners.contains(listener))) {
+			return;
+		}
+		if (this.listener == null) {
+			this.listener = listener;
+		} else {
+			if (listeners == null) {
+				listeners = new ArrayList<StateChangedListener<Entity>>(1);
+			}
+			listeners.add(listener);
+		}
+		listener.OnStateChanged(this);
+	}
+
+	public void removeStateChangedListener(StateChangedListener<Entity> listener) {
+		if (this.listener == listener) {
+			this.listener = listeners == null || listeners.isEmpty() ? null : listeners.remove(0);
+		} else if (listeners != null) {
+			listeners.remove(listener);
 		}
 	}
 
@@ -88,10 +167,10 @@ public class Entity {
 		if (dir == null) {
 			return false;
 		}
-		Tile next = currentTile.getNeighbour(dir);
-		if (!Tile.isDummyTile(next)) {
-			nextTile = next;
-			moveProgress = 0;
+		int next = neighbour(store.current[id], dir);
+		if (next >= 0) {
+			store.next[id] = next;
+			store.moveProgress[id] = 0;
 			stateChanged();
 			return true;
 		}
@@ -100,37 +179,171 @@ public class Entity {
 
 	// go back to old tile
 	public void stop() {
-		nextTile = currentTile;
-		moveProgress = 0;
+		store.next[id] = store.current[id];
+		store.moveProgress[id] = 0;
 		stateChanged();
 	}
 
 	private void finishedMoving() {
-		currentTile = nextTile;
-		moveProgress = 0;
-		findPathToTarget();
+		store.current[id] = store.next[id];
+		store.moveProgress[id] = 0;
+		followPath();
 		stateChanged();
 	}
 
 	public void update(int ticks) {
-		moveProgress += ticks;
-		if (moveProgress >= moveDuration) {
+		store.moveProgress[id] += ticks;
+		if (store.moveProgress[id] >= store.moveDuration[id]) {
 			finishedMoving();
 
 			// TODO determine nextTile based on a pathfinder
 //			move(Direction.EAST);
-//			findPathToTarget();
+//			followPath();
 			move(getDirection());
 		}
 	}
 	
+	/**
+	 * Works out what the next update does once the entity arrives at its next tile. Changes nothing
+	 * but the plan and the tiles its objectives' triggers are on, which only this entity reads,
+	 * so the entities arriving on the same tick can all be planned at once, on as many threads as there are,
+	 * as long as nothing else changes meanwhile. Heading for a building reads the flow field the PathFinder
+	 * already has. Arrivals that need the PathFinder to search, for a new route or a flow field that
+	 * isn't up to date, aren't planned: those go through {@link #update(int)} as usual.
+	 */
+	public void plan() {
+		plan = PLAN_NONE;
+		if (planner != null) {
+			return;
+		}
+		int here = store.next[id];
+		int version = store.gameModel.getNetworkVersion();
+		Entity target = getTargetEntity();
+		if (target == null) {
+			if (!hasObjectives()) {
+				plan = PLAN_CLEAR;
+				return;
+			}
+			lookForTriggers();
+			if (leadsToTrigger(here, version)) {
+				plan = path.isReachable() && path.hasNext() ? PLAN_STEP : PLAN_STAY;
+			}
+			return;
+		}
+		planGoal = store.current[target.id];
+		if (target instanceof Building) {
+			FlowField field = store.gameModel.getPathFinder().peekFlowField(target);
+			if (field != null) {
+				Direction dir = field.getDirection(here);
+				planNext = dir == null ? here : neighbour(here, dir);
+				plan = PLAN_FLOW;
+			}
+			return;
+		}
+		if (path != null && path.isValid(here, planGoal, version)) {
+			plan = path.isReachable() && path.hasNext() ? PLAN_STEP : PLAN_STAY;
+		}
+	}
+
+	/**
+	 * Same as {@link #update(int)}, but carries out what {@link #plan()} decided if the entities
+	 * it looked at are still where they were. Otherwise, or without a plan, it just updates.
+	 */
+	public void updatePlanned(int ticks) {
+		int planned = plan;
+		plan = PLAN_NONE;
+		if (planned == PLAN_NONE || store.moveProgress[id] + ticks < store.moveDuration[id] || !planHolds(planned)) {
+			update(ticks);
+			return;
+		}
+		// As finishedMoving() and followPath() would have
+		store.current[id] = store.next[id];
+		store.moveProgress[id] = 0;
+		if (planned == PLAN_CLEAR) {
+			if (path != null) {
+				path.clear();
+			}
+		} else {
+			if (store.target[id] != EntityStore.NONE) {
+				forgetRouteTiles();
+			}
+			if (planned == PLAN_STEP) {
+				store.next[id] = neighbour(store.current[id], path.next(store.gameModel.width));
+			} else if (planned == PLAN_FLOW) {
+				if (path != null) {
+					path.clear();
+				}
+				store.next[id] = planNext;
+				// Uses the field as followPath() would, so the same fields stay cached
+				store.gameModel.getPathFinder().getFlowField(getTargetEntity());
+			}
+		}
+		stateChanged();
+		move(getDirection());
+	}
+
+	/**
+	 * @return true if the entities the plan was made for haven't moved since,
+	 *         which only entities arriving earlier on the same tick could have.
+	 */
+	private boolean planHolds(int planned) {
+		int target = store.target[id];
+		if (target != EntityStore.NONE) {
+			return store.current[target] == planGoal;
+		}
+		if (planned == PLAN_CLEAR) {
+			return true;
+		}
+		for (int o = store.objectives[id]; o != EntityStore.NONE; o = store.getNextObjective(o)) {
+			if (store.current[store.getTrigger(o)] != store.triggerTile[o]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Notes down the tile the trigger of every objective is on now.
+	 */
+	private void lookForTriggers() {
+		for (int o = store.objectives[id]; o != EntityStore.NONE; o = store.getNextObjective(o)) {
+			store.triggerTile[o] = store.current[store.getTrigger(o)];
+		}
+	}
+
+	/**
+	 * @return true if path still leads from here to the closest trigger as last looked for: it ends on the tile
+	 *         of one of them, or it found none reachable and none of them moved since.
+	 */
+	private boolean leadsToTrigger(int here, int version) {
+		if (path == null || !path.isValid(here, path.getGoal(), version)) {
+			return false;
+		}
+		boolean reachable = path.isReachable();
+		for (int o = store.objectives[id]; o != EntityStore.NONE; o = store.getNextObjective(o)) {
+			if (reachable ? store.triggerTile[o] == path.getGoal() : store.triggerTile[o] != store.routeTile[o]) {
+				return reachable;
+			}
+		}
+		return !reachable;
+	}
+
+	private void forgetRouteTiles() {
+		for (int o = store.objectives[id]; o != EntityStore.NONE; o = store.getNextObjective(o)) {
+			store.routeTile[o] = EntityStore.NONE;
+		}
+	}
+
 	protected Direction getDirection() {
-		if (nextTile.y - currentTile.y > 0) {
+		int width = store.gameModel.width;
+		int current = store.current[id];
+		int next = store.next[id];
+		if (next / width - current / width > 0) {
 			return Direction.NORTH;
-		} else if (nextTile.y == currentTile.y) {
-			if (nextTile.x - currentTile.x > 0) {
+		} else if (next / width == current / width) {
+			if (next % width - current % width > 0) {
 				return Direction.EAST;
-			} else if (nextTile.x == currentTile.x) {
+			} else if (next % width == current % width) {
 				return null;
 			} else {
 				return Direction.WEST;
@@ -140,9 +353,21 @@ public class Entity {
 		}
 	}
 
+	/**
+	 * @return Tile id of the neighbour in that direction, or -1 at the edge of the map.
+	 */
+	private int neighbour(int tile, Direction dir) {
+		return store.gameModel.getGrid().neighbour(tile, dir.ordinal());
+	}
+
 	private void stateChanged() {
-		for(StateChangedListener<Entity> l : listeners) {
-			l.OnStateChanged(this);
+		if (listener != null) {
+			listener.OnStateChanged(this);
+		}
+		if (listeners != null) {
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).OnStateChanged(this);
+			}
 		}
 	}
 
@@ -156,84 +381,154 @@ public class Entity {
 	 */
 	public void save(Json json) {
 		json.writeObjectStart("entity");
-		json.writeValue("x", currentTile.x);
-		json.writeValue("y", currentTile.y);
+		Tile tile = getCurrentTile();
+		json.writeValue("x", tile.x);
+		json.writeValue("y", tile.y);
 		json.writeValue("entity_type", "entity");
 		// TODO save metadata
 		json.writeObjectEnd();
 	}
 	
-	private void findPathToTarget() {
-		if (mTargetEntity == null){
+	/**
+	 * Sets the next tile to the next step of the route towards the target entity.
+	 * Buildings don't move, so the way to them comes from a flow field shared with every other entity
+	 * heading there. Other routes are only planned again when the road network changed,
+	 * the target left the route's end tile, or this entity left the route.
+	 * A new route is requested from the PathFinder's queue and this entity waits where it is
+	 * until the route comes in, at the start of a later tick.
+	 * Without a target, the entity heads for the closest entity that sets off one of its objectives.
+	 */
+	private void followPath() {
+		GameModel gameModel = store.gameModel;
+		PathFinder pathFinder = gameModel.getPathFinder();
+		Entity target = getTargetEntity();
+		if (target == null){
+			releasePlanner(pathFinder);
+			if (!hasObjectives()) {
+				if (path != null) {
+					path.clear();
+				}
+			} else {
+				seekObjective(gameModel, pathFinder);
+			}
 			return;
 		}
-		int stepsTaken = 0;
-		Boolean success = false;
-		Tile targetTile = mTargetEntity.currentTile;
-		Node currNode = new Node(currentTile, currentTile, 0, null);
-		PriorityQueue<Node> searchList = new PriorityQueue<Node>();
-		HashMap<Tile, Node> visitedNodes = new HashMap<Tile, Node>();
-		searchList.add(new Node(currentTile, targetTile, stepsTaken, null));
-		while(searchList.size()>0){
-			currNode = searchList.poll();
-			if (currNode.tile == targetTile) {
-				success = true;
-				break;
+		forgetRouteTiles();
+		int here = store.current[id];
+		if (target instanceof Building) {
+			if (path != null) {
+				path.clear();
 			}
-			int newStepsTaken = currNode.stepsTaken + 1;
-			for( Tile tile : currNode.tile.getNeighbours()) {
-				if(visitedNodes.get(tile) != null){
-					visitedNodes.get(tile).updateNode(newStepsTaken, currNode);
-				} else {
-					searchList.add(new Node(tile, targetTile, newStepsTaken, currNode));
+			releasePlanner(pathFinder);
+			Direction dir = pathFinder.getFlowField(target).getDirection(here);
+			store.next[id] = dir == null ? here : neighbour(here, dir);
+			return;
+		}
+		int goal = store.current[target.id];
+		if (path == null || !path.isValid(here, goal, gameModel.getNetworkVersion())) {
+			if (pathFinder.isIncremental()) {
+				// Planned right away, outside the request queue and its budget
+				planPath(pathFinder, here, goal);
+			} else {
+				releasePlanner(pathFinder);
+				if (!takeRequestedPath(pathFinder, here, goal)) {
+					store.next[id] = here;
+					return;
 				}
 			}
-			visitedNodes.put(currNode.tile, currNode);
 		}
-		if (success) {
-			if (currNode.tile == this.currentTile) {
+		if (!path.isReachable()) {
+			store.next[id] = here;
+		} else if (path.hasNext()) {
+			store.next[id] = neighbour(here, path.next(gameModel.width));
+		}
+	}
+
+	/**
+	 * Heads for whichever of the triggers of its objectives is closest, all of them looked for in one search.
+	 * The route is kept while the entity it leads to stays on its end tile.
+	 */
+	private void seekObjective(GameModel gameModel, PathFinder pathFinder) {
+		int here = store.current[id];
+		lookForTriggers();
+		if (!leadsToTrigger(here, gameModel.getNetworkVersion())) {
+			IntArray goals = store.goals;
+			goals.clear();
+			for (int o = store.objectives[id]; o != EntityStore.NONE; o = store.getNextObjective(o)) {
+				goals.add(store.triggerTile[o]);
+			}
+			if (!takeRequestedPath(pathFinder, here, goals)) {
+				store.next[id] = here;
 				return;
 			}
-			while (currNode.previous.tile != this.currentTile) {
-				currNode = currNode.previous;
+			for (int o = store.objectives[id]; o != EntityStore.NONE; o = store.getNextObjective(o)) {
+				store.routeTile[o] = store.triggerTile[o];
 			}
-			this.nextTile = currNode.tile;
-		} else {
-			this.nextTile = this.currentTile;
 		}
-		
+		if (!path.isReachable()) {
+			store.next[id] = here;
+		} else if (path.hasNext()) {
+			store.next[id] = neighbour(here, path.next(gameModel.width));
+		}
 	}
-	
-	private class Node implements Comparable<Node> {
-		public final Tile tile;
-		int stepsTaken;
-		double value;
-		Node previous;
-		public Node(Tile startTile, Tile endTile, int stepsTaken, Node previous){
-			this.tile = startTile;
-			this.stepsTaken = stepsTaken;
-			this.previous = previous;
-			this.value = Math.sqrt(Math.pow(startTile.x - endTile.x, 2) + Math.pow(startTile.y - endTile.y, 2));
+
+	private void planPath(PathFinder pathFinder, int here, int goal) {
+		if (planner == null) {
+			planner = pathFinder.createPlanner();
 		}
-		
-		void updateNode(int stepsTaken, Node previous){
-			if (stepsTaken < this.stepsTaken) {
-				this.stepsTaken = stepsTaken;
-				this.previous = previous;
-			}
+		planner.findPath(here, goal, route());
+	}
+
+	/**
+	 * Takes the route requested earlier if it leads from here to goal, otherwise asks for one.
+	 *
+	 * @return true if path now leads from here to goal.
+	 */
+	private boolean takeRequestedPath(PathFinder pathFinder, int here, int goal) {
+		if (request == null) {
+			request = new PathRequest();
+		} else if (request.isPending()) {
+			return false;
 		}
-		
-		int getStepsTaken() {
-			return this.stepsTaken;
+		if (request.isDone() && request.getStart() == here && request.getGoals().size == 1 && request.getGoal() == goal) {
+			// Follow it even if the roads changed since, the next step asks again
+			path = request.takePath();
+			return true;
 		}
-		
-		double getValue() {
-			return this.stepsTaken + this.value;
+		pathFinder.getRequests().submit(request, here, goal);
+		return false;
+	}
+
+	/**
+	 * Takes the route requested earlier if it leads from here to the closest of goals, otherwise asks for one.
+	 *
+	 * @return true if path now leads from here to the closest goal.
+	 */
+	private boolean takeRequestedPath(PathFinder pathFinder, int here, IntArray goals) {
+		if (request == null) {
+			request = new PathRequest();
+		} else if (request.isPending()) {
+			return false;
 		}
-		
-		@Override
-		public int compareTo(Node other){
-			return (this.getValue() < other.getValue()) ? -1 : 1;
+		if (request.isDone() && request.isFor(here, goals)) {
+			path = request.takePath();
+			return true;
+		}
+		pathFinder.getRequests().submit(request, here, goals);
+		return false;
+	}
+
+	private Path route() {
+		if (path == null) {
+			path = new Path();
+		}
+		return path;
+	}
+
+	private void releasePlanner(PathFinder pathFinder) {
+		if (planner != null) {
+			pathFinder.releasePlanner(planner);
+			planner = null;
 		}
 	}
 
@@ -257,27 +552,79 @@ public class Entity {
 	}
 	
 	public Entity getTargetEntity() {
-		return mTargetEntity;
+		return store.getEntity(store.target[id]);
 	}
 	
 	public void setTargetEntity(Entity targetEntity) {
-		mTargetEntity = targetEntity;
+		int target = targetEntity == null ? EntityStore.NONE : targetEntity.id;
+		if (store.target[id] != target) {
+			store.target[id] = target;
+			stateChanged();
+		}
 	}
 	
-	public HashMap<Entity,Entity> getObjectives() {
-		return mObjectives;
+	public boolean hasObjectives() {
+		return store.objectives[id] != EntityStore.NONE;
 	}
 	
+	/**
+	 * @return true if the entity has an objective set off by trigger.
+	 */
+	public boolean hasObjective(Entity trigger) {
+		for (int o = store.objectives[id]; o != EntityStore.NONE; o = store.getNextObjective(o)) {
+			if (store.getTrigger(o) == trigger.id) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Heads for e2 once e1 is next to this entity. Replaces the target of the objective it already has for e1.
+	 * The objectives can be walked through the {@link EntityStore}, from {@link EntityStore#getFirstObjective(int)}.
+	 */
 	public void addObjective(Entity e1, Entity e2) {
-		mObjectives.put(e1, e2);
+		store.addObjective(id, e1.id, e2 == null ? EntityStore.NONE : e2.id);
+		stateChanged();
+	}
+
+	
+	/**
+	 * Metadata of the entity (used to store strings, sprite dimension info etc), kept in the model's
+	 * {@link MetadataStore}. Keys are looked up by name here; the getters taking a key id don't look anything up.
+	 */
+	public void addMetadata(String key, String value) {
+		MetadataStore metadata = getMetadata();
+		metadata.setString(id, metadata.getKey(key, MetadataStore.Kind.STRING), value);
 	}
 	
-	public void addMetadata(String key, Object value) {
-		mMetadata.put(key, value);
+	public void addMetadata(String key, int value) {
+		MetadataStore metadata = getMetadata();
+		metadata.setInt(id, metadata.getKey(key, MetadataStore.Kind.INT), value);
+	}
+	
+	/**
+	 * @return The string the entity has for the key, such as {@link MetadataStore#NAME}, or null.
+	 */
+	public String getMetadataString(int key) {
+		return getMetadata().getString(id, key);
+	}
+	
+	public int getMetadataInt(int key, int otherwise) {
+		return getMetadata().getInt(id, key, otherwise);
+	}
+	
+	/**
+	 * @return Whatever the entity has for the key, or null if it has nothing or no entity ever had the key.
+	 */
+	public Object getMetadata(String key) {
+		MetadataStore metadata = getMetadata();
+		int k = metadata.findKey(key);
+		return k == MetadataStore.NONE ? null : metadata.get(id, k);
 	}
 	
-	public HashMap<String,Object> getMetadata() {
-		return mMetadata;
+	public MetadataStore getMetadata() {
+		return store.gameModel.getMetadataStore();
 	}
 	
 }
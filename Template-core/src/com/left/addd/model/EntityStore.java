@@ -0,0 +1,209 @@
+package com.left.addd.model;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * What changes about the entities of a GameModel as they move, kept in packed arrays indexed by
+ * entity id rather than in the entities themselves: the tile each stands on, the tile it is moving to,
+ * how far along it is and what it is heading for. An {@link Entity} is only a handle onto its slot here,
+ * so anything that goes over every entity reads a few arrays in order instead of an object per entity,
+ * and an entity's position costs two ints rather than two Tiles.
+ * <p>
+ * Objectives live here too, as nodes in pooled arrays linked up per entity in the order they were added,
+ * each with the entity that sets it off, the one to head for then, and the tiles the entity's routes
+ * looked for the trigger on. Nodes are never freed, as objectives are never taken away.
+ * <p>
+ * Ids are handed out in the order the entities are made and never reused, so the ids other entities
+ * keep, like their target's, stay good for as long as the model.
+ */
+public class EntityStore {
+	/** Id of no entity */
+	public static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	final GameModel gameModel;
+	private int size;
+	private Entity[] handles;
+	/** Tile id each entity stands on */
+	int[] current;
+	/** Tile id each entity is moving to, the same as current when it stands still */
+	int[] next;
+	/** Ticks each entity takes to move to the next tile */
+	int[] moveDuration;
+	/** Ticks each entity is into its move, as of its last update */
+	int[] moveProgress;
+	/** Id of the entity each is heading for, or NONE */
+	int[] target;
+	/** First objective node of each entity, or NONE */
+	int[] objectives;
+
+	// Objective nodes
+	private int objectiveCount;
+	/** Entity that sets off each objective by being next to its entity */
+	private int[] trigger;
+	/** Entity its entity heads for once next to the trigger */
+	private int[] objectiveTarget;
+	/** Next objective node of the same entity, or NONE */
+	private int[] nextObjective;
+	/** Tile the trigger was on when the entity last looked for it */
+	int[] triggerTile;
+	/** Tile the trigger was on when the entity's route was planned towards the nearest trigger, or NONE */
+	int[] routeTile;
+
+	/** Goal tiles for a path request, only for the thread that updates the entities one after the other */
+	final IntArray goals;
+
+	public EntityStore(GameModel gameModel) {
+		this.gameModel = gameModel;
+		this.size = 0;
+		this.handles = new Entity[INITIAL_CAPACITY];
+		this.current = new int[INITIAL_CAPACITY];
+		this.next = new int[INITIAL_CAPACITY];
+		this.moveDuration = new int[INITIAL_CAPACITY];
+		this.moveProgress = new int[INITIAL_CAPACITY];
+		this.target = new int[INITIAL_CAPACITY];
+		this.objectives = new int[INITIAL_CAPACITY];
+		this.objectiveCount = 0;
+		this.trigger = new int[INITIAL_CAPACITY];
+		this.objectiveTarget = new int[INITIAL_CAPACITY];
+		this.nextObjective = new int[INITIAL_CAPACITY];
+		this.triggerTile = new int[INITIAL_CAPACITY];
+		this.routeTile = new int[INITIAL_CAPACITY];
+		this.goals = new IntArray();
+	}
+
+	/**
+	 * Gives a new entity a slot, standing still on the tile.
+	 *
+	 * @return Id of the entity.
+	 */
+	int add(Entity entity, int tile) {
+		if(size == handles.length) {
+			int capacity = size * 2;
+			handles = Arrays.copyOf(handles, capacity);
+			current = Arrays.copyOf(current, capacity);
+			next = Arrays.copyOf(next, capacity);
+			moveDuration = Arrays.copyOf(moveDuration, capacity);
+			moveProgress = Arrays.copyOf(moveProgress, capacity);
+			target = Arrays.copyOf(target, capacity);
+			objectives = Arrays.copyOf(objectives, capacity);
+		}
+		int id = size++;
+		handles[id] = entity;
+		current[id] = tile;
+		next[id] = tile;
+		moveDuration[id] = 1;
+		moveProgress[id] = 0;
+		target[id] = NONE;
+		objectives[id] = NONE;
+		return id;
+	}
+
+	/**
+	 * Gives the entity an objective, or a new target for the objective it already has with that trigger.
+	 */
+	void addObjective(int id, int trigger, int target) {
+		int last = NONE;
+		for(int o = objectives[id]; o != NONE; o = nextObjective[o]) {
+			if(this.trigger[o] == trigger) {
+				objectiveTarget[o] = target;
+				return;
+			}
+			last = o;
+		}
+		if(objectiveCount == this.trigger.length) {
+			int capacity = objectiveCount * 2;
+			this.trigger = Arrays.copyOf(this.trigger, capacity);
+			objectiveTarget = Arrays.copyOf(objectiveTarget, capacity);
+			nextObjective = Arrays.copyOf(nextObjective, capacity);
+			triggerTile = Arrays.copyOf(triggerTile, capacity);
+			routeTile = Arrays.copyOf(routeTile, capacity);
+		}
+		int o = objectiveCount++;
+		this.trigger[o] = trigger;
+		objectiveTarget[o] = target;
+		nextObjective[o] = NONE;
+		triggerTile[o] = NONE;
+		routeTile[o] = NONE;
+		if(last == NONE) {
+			objectives[id] = o;
+		} else {
+			nextObjective[last] = o;
+		}
+	}
+
+	/**
+	 * @return Number of entities ever made for the model, one more than the highest id.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The entity with the id, or null for NONE.
+	 */
+	public Entity getEntity(int id) {
+		return id == NONE ? null : handles[id];
+	}
+
+	/**
+	 * @return Tile id the entity stands on.
+	 */
+	public int getCurrentTile(int id) {
+		return current[id];
+	}
+
+	/**
+	 * @return Tile id the entity is moving to, the same as its current tile if it stands still.
+	 */
+	public int getNextTile(int id) {
+		return next[id];
+	}
+
+	public int getMoveDuration(int id) {
+		return moveDuration[id];
+	}
+
+	public int getMoveProgress(int id) {
+		return moveProgress[id];
+	}
+
+	/**
+	 * @return Id of the entity it is heading for, or NONE.
+	 */
+	public int getTarget(int id) {
+		return target[id];
+	}
+
+	/**
+	 * Objectives of an entity are walked from this through {@link #getNextObjective(int)}, in the order they were added.
+	 *
+	 * @return First objective node of the entity, or NONE if it has none.
+	 */
+	public int getFirstObjective(int id) {
+		return objectives[id];
+	}
+
+	/**
+	 * @return Next objective node of the same entity, or NONE.
+	 */
+	public int getNextObjective(int objective) {
+		return nextObjective[objective];
+	}
+
+	/**
+	 * @return Id of the entity that sets off the objective by being next to its entity.
+	 */
+	public int getTrigger(int objective) {
+		return trigger[objective];
+	}
+
+	/**
+	 * @return Id of the entity to head for once the trigger is next to it.
+	 */
+	public int getObjectiveTarget(int objective) {
+		return objectiveTarget[objective];
+	}
+}
@@ -13,7 +13,9 @@ import com.left.addd.model.GameModel;
 import com.left.addd.model.Network;
 import com.left.addd.model.Tile;
 import com.left.addd.model.Time;
+import com.left.addd.model.pathfinding.PathFinder;
 import com.left.addd.services.EntityManager;
+import com.left.addd.services.EntityPlanner;
 
 /**
  * TemplateModel is the model for this game. It represents the logic behind this game.
@@ -21,100 +23,130 @@ import com.left.addd.services.EntityManager;
  * Reference: https://github.com/libgdx/libgdx/tree/master/demos/very-angry-robots/very-angry-robots/src/com/badlydrawngames/veryangryrobots
  */
 public class GameModel {
-	private final Tile[][] tiles;
+	private final WorldGrid grid;
 	public final int width;
 	public final int height;
 	private Time time;
+	private final PathFinder pathFinder;
+	private final NetworkComponents components;
+	private final TileScheduler scheduler;
+	/** Runs Network.update for the tiles whose network type has rules */
+	private final TileScheduler.Task networkRules;
+	/** Bumped every time a road is added or removed, so cached routes know they are stale */
+	private int networkVersion;
 	
 	private List<StateChangedListener<GameModel>> listeners;
 	
-	EntityManager em = EntityManager.getInstance();
+	/** Each model has entities of its own, so several can be run side by side */
+	private final EntityStore entityStore;
+	private final MetadataStore metadataStore;
+	final EntityManager em;
 
 	public GameModel(int width, int height) {
-		this(width, height, 0, true);
+		this(width, height, 0);
+		createTestScenario();
 	}
 	
-	public GameModel(int width, int height, long timeInHours, boolean initializeTiles) {
+	/**
+	 * Creates an empty map.
+	 */
+	public GameModel(int width, int height, long timeInHours) {
 		this.width = width;
 		this.height = height;
-		this.tiles = new Tile[width][height];
-		if(initializeTiles) {
-			int[][] testMap = new int[][]{
-					{0,0,1,1,0,0,0,0,0,0,0,0,0,0,0},
-					{0,0,0,1,0,0,0,0,0,1,1,1,1,1,1},
-					{0,0,1,1,1,1,0,1,0,1,0,0,0,0,0},
-					{0,0,0,0,0,1,1,1,1,1,0,0,0,0,0},
-					{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
-					{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
-					{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
-					{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
-					{0,0,0,0,1,1,1,1,1,1,1,1,1,1,1},
-					{1,1,1,1,1,0,0,1,0,0,0,0,1,0,0},
-					{1,0,0,0,1,0,0,0,0,0,0,0,1,0,0},
-					{1,0,0,1,1,0,0,0,0,0,0,1,1,0,0},
-					{1,0,0,0,1,1,1,1,1,1,1,1,1,0,0},
-					{0,0,0,0,1,0,0,0,1,0,0,0,0,0,1},
-					{1,1,1,1,1,0,0,0,1,1,1,1,1,1,1},
-			};
-			for(int i = 0; i < width; i++) {
-				for(int j = 0; j < height; j++) {
-					if (testMap[i][j] == 1){
-						tiles[i][j] = new Tile(this, i, j, new Network(NetworkType.ROAD, null, null, this.getTile(i, j-1).getNetwork(), this.getTile(i-1, j).getNetwork()));
-						} else {
-							tiles[i][j] = new Tile(this, i, j, null);
-						}
-					}
-			}
-		}
+		this.grid = new WorldGrid(width, height);
+		this.components = new NetworkComponents(this);
+		this.pathFinder = new PathFinder(this);
 		
 		this.time = new Time(timeInHours);
+		this.scheduler = new TileScheduler(timeInHours);
+		this.entityStore = new EntityStore(this);
+		this.metadataStore = new MetadataStore();
+		this.em = new EntityManager(width, timeInHours);
+		this.networkRules = new TileScheduler.Task() {
+			@Override
+			public void run(int tile, int ticks) {
+				Network.update(grid, tile, ticks);
+			}
+		};
+		this.listeners = new ArrayList<StateChangedListener<GameModel>>();
+	}
+
+	/**
+	 * Lays out the test map and its cast. Only fits a 15x15 model.
+	 */
+	private void createTestScenario() {
+		int[][] testMap = new int[][]{
+				{0,0,1,1,0,0,0,0,0,0,0,0,0,0,0},
+				{0,0,0,1,0,0,0,0,0,1,1,1,1,1,1},
+				{0,0,1,1,1,1,0,1,0,1,0,0,0,0,0},
+				{0,0,0,0,0,1,1,1,1,1,0,0,0,0,0},
+				{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
+				{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
+				{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
+				{0,0,0,0,0,1,0,0,0,1,0,0,0,0,0},
+				{0,0,0,0,1,1,1,1,1,1,1,1,1,1,1},
+				{1,1,1,1,1,0,0,1,0,0,0,0,1,0,0},
+				{1,0,0,0,1,0,0,0,0,0,0,0,1,0,0},
+				{1,0,0,1,1,0,0,0,0,0,0,1,1,0,0},
+				{1,0,0,0,1,1,1,1,1,1,1,1,1,0,0},
+				{0,0,0,0,1,0,0,0,1,0,0,0,0,0,1},
+				{1,1,1,1,1,0,0,0,1,1,1,1,1,1,1},
+		};
+		for(int i = 0; i < width; i++) {
+			for(int j = 0; j < height; j++) {
+				if (testMap[i][j] == 1){
+					grid.place(i + j * width, NetworkType.ROAD);
+					scheduleNetworkRules(i + j * width);
+				}
+			}
+		}
 		
-		Building testBuilding = new Building(Building.Type.HOUSE, tiles[12][0]);
+		Building testBuilding = new Building(Building.Type.HOUSE, getTile(12, 0));
 		testBuilding.addMetadata("Name", "Hotel");
 		testBuilding.addMetadata("Description", "This is where Alice and Chad go when they get it on");
 		
-		Building testBuilding2 = new Building(Building.Type.FACTORY, tiles[1][13]);
+		Building testBuilding2 = new Building(Building.Type.FACTORY, getTile(1, 13));
 		testBuilding2.addMetadata("Name", "Bob's Workplace");
 		testBuilding2.addMetadata("Description", "This is where Bob works while Alice cheats on him");
 		
-		Building testBuilding3 = new Building(Building.Type.SCHOOL, tiles[5][3]);
+		Building testBuilding3 = new Building(Building.Type.SCHOOL, getTile(5, 3));
 		testBuilding3.addMetadata("Name", "School");
 		testBuilding3.addMetadata("Description", "This is Alice's school");
 		
-		Building testBuilding4 = new Building(Building.Type.LIBRARY, tiles[10][13]);
+		Building testBuilding4 = new Building(Building.Type.LIBRARY, getTile(10, 13));
 		testBuilding4.addMetadata("Name", "Library");
 		testBuilding4.addMetadata("Description", "Students study here");
 		
-		NPC testEntity = new NPC(NPC.Type.STUDENT, tiles[0][2]);
+		NPC testEntity = new NPC(NPC.Type.STUDENT, getTile(0, 2));
 		testEntity.addMetadata("Name", "Alice");
 		testEntity.addMetadata("Description", "Alice is a homewrecker and gets with Bob and Chad");
 
-		NPC testEntity2 = new NPC(NPC.Type.HERO, tiles[2][2]);
+		NPC testEntity2 = new NPC(NPC.Type.HERO, getTile(2, 2));
 		testEntity2.addMetadata("Name", "Bob");
 		testEntity2.addMetadata("Description", "Bob is a hardworking family man");
 		testEntity.setTargetEntity(testEntity2);
 
-		NPC testEntity3 = new NPC(NPC.Type.FACULTY, tiles[13][14]);
+		NPC testEntity3 = new NPC(NPC.Type.FACULTY, getTile(13, 14));
 		testEntity3.addMetadata("Name", "Chad");
 		testEntity3.addMetadata("Description", "Fucking Chad");
 		
-		NPC testEntity4 = new NPC(NPC.Type.FACULTY, tiles[2][7]);
+		NPC testEntity4 = new NPC(NPC.Type.FACULTY, getTile(2, 7));
 		testEntity4.addMetadata("Name", "Bob's Bad Influence #1");
 		testEntity4.addMetadata("Description", "Always distracts Bob");
 
-		NPC testEntity5 = new NPC(NPC.Type.FACULTY, tiles[11][11]);
+		NPC testEntity5 = new NPC(NPC.Type.FACULTY, getTile(11, 11));
 		testEntity5.addMetadata("Name", "Bob's Bad Influence #2");
 		testEntity5.addMetadata("Description", "Always distracts Bob");
 
-		NPC testEntity6 = new NPC(NPC.Type.POLICE, tiles[9][7]);
+		NPC testEntity6 = new NPC(NPC.Type.POLICE, getTile(9, 7));
 		testEntity6.addMetadata("Name", "POPO");
 		testEntity6.addMetadata("Description", "Reminds Bob to be an upstanding, working citizen");
 		
-		NPC testEntity7 = new NPC(NPC.Type.FACULTY, tiles[11][3]);
+		NPC testEntity7 = new NPC(NPC.Type.FACULTY, getTile(11, 3));
 		testEntity7.addMetadata("Name", "Some Random Dude");
 		testEntity7.addMetadata("Description", "He looks a stoned");
 		
-		NPC testEntity8 = new NPC(NPC.Type.FACULTY, tiles[11][4]);
+		NPC testEntity8 = new NPC(NPC.Type.FACULTY, getTile(11, 4));
 		testEntity8.addMetadata("Name", "Runner");
 		testEntity8.addMetadata("Description", "He likes shorts. They're comfortable and easy to wear");
 
@@ -143,32 +175,120 @@ public class GameModel {
 		em.addEntity(testEntity7);
 		em.addEntity(testEntity8);
 		testEntity.move(Direction.NORTH);
-		
-		this.listeners = new ArrayList<StateChangedListener<GameModel>>();
 	}
 	
 	public Tile getTileByEntityProperty(){
-		return new Tile(this,-1,-1,null);
+		return new Tile(this,-1,-1);
 	}
 	
 	public Time getTime() {
 		return time;
 	}
 	
+	public PathFinder getPathFinder() {
+		return pathFinder;
+	}
+
+	/**
+	 * @return Which connected piece of network each tile is on.
+	 */
+	public NetworkComponents getComponents() {
+		return components;
+	}
+
+	public int getNetworkVersion() {
+		return networkVersion;
+	}
+
+	/**
+	 * Called by a Tile before its Network is set or cleared.
+	 */
+	void networkChanging(Tile tile) {
+		pathFinder.tileChanging(tile);
+	}
+
+	/**
+	 * Called by a Tile after its Network was set or cleared.
+	 */
+	void networkChanged(Tile tile) {
+		networkVersion++;
+		components.tileChanged(tile);
+		pathFinder.tileChanged(tile);
+		scheduleNetworkRules(tile.getId());
+	}
+
+	/**
+	 * Registers the rules of the tile's network type with the scheduler, or unregisters them
+	 * if it has none any more.
+	 */
+	private void scheduleNetworkRules(int tile) {
+		scheduler.cancel(tile, networkRules);
+		NetworkType type = grid.getType(tile);
+		if(type.period > 0) {
+			scheduler.schedule(tile, networkRules, type.period);
+		}
+	}
+	
 	public List<Entity> getEntities() {
 		return em.getEntities();
 	}
 
-	public Tile[][] getTiles() {
-		return tiles;
+	public EntityManager getEntityManager() {
+		return em;
+	}
+
+	/**
+	 * @return Where the entities made for this model are and where they are heading, by entity id.
+	 */
+	public EntityStore getEntityStore() {
+		return entityStore;
+	}
+
+	/**
+	 * @return Names, descriptions and other metadata of the entities made for this model, by entity id.
+	 */
+	public MetadataStore getMetadataStore() {
+		return metadataStore;
+	}
+
+	/**
+	 * @param planners Makes what plans the entities arriving on a tick all at once, for example on a pool of threads,
+	 *        or null to update them one after the other.
+	 */
+	public void setEntityPlanner(EntityPlanner.Factory planners) {
+		em.getScheduler().setPlanner(planners == null ? null : planners.create());
+	}
+
+	/**
+	 * @return The scheduler running the behaviour of tiles, which other things on the map can register with too.
+	 */
+	public TileScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * @return The tiles as flat arrays, for going over many of them without making a Tile for each.
+	 */
+	public WorldGrid getGrid() {
+		return grid;
 	}
 
+	/**
+	 * @return A view of the tile, or the dummy tile outside the map.
+	 */
 	public Tile getTile(int x, int y) {
 		if(0 > x || x >= width || 0 > y || y >= height) {
 			// log("Not a Tile: " + Utils.pCoords(x, y));
 			return Tile.dummyTile();
 		}
-		return tiles[x][y];
+		return new Tile(this, x, y);
+	}
+
+	/**
+	 * @param id Tile id, as given by {@link Tile#getId()}
+	 */
+	public Tile getTile(int id) {
+		return getTile(id % width, id / width);
 	}
 	
 	public void addListener(StateChangedListener<GameModel> listener) {
@@ -210,37 +330,52 @@ public class GameModel {
 		return query.toString();
 	}
 	
-	public void update(float delta) {
+	/**
+	 * Runs as many ticks as the real time adds up to, one after the other, see {@link Time#update(float)}.
+	 *
+	 * @param delta Real time passed in seconds, already multiplied by the game speed.
+	 * @return Number of ticks run.
+	 */
+	public int update(float delta) {
 		int ticks = time.update(delta);
-		updateTiles(ticks);
-		updateEntities(ticks);
-		em.checkObjectivesAndUpdateTargets();
+		pathFinder.update();
+		long hour = time.getTime() - ticks;
+		for(int i = 0; i < ticks; i++) {
+			tick(++hour);
+		}
+		return ticks;
 	}
 
-	private void updateTiles(int ticks) {
-		for(Tile[] ts: tiles) {
-			for(Tile t: ts) {
-				t.update(ticks);
-			}
-		}
+	private void tick(long hour) {
+		pathFinder.getRequests().beginTick();
+		scheduler.update(hour);
+		// Only the entities arriving this tick
+		em.update(hour);
+		// Also picks up objectives set between ticks. Frames without ticks leave them be,
+		// so they take effect on the same tick however the frames fell.
+		em.checkObjectivesAndUpdateTargets();
+		// Solved while the frame is drawn, or the next tick of this frame, read next tick
+		pathFinder.getRequests().endTick();
 	}
-	
-	private void updateEntities(int ticks) {
-		for(Entity e : em.getEntities()) {
-			e.update(ticks);
-		}
+
+	/**
+	 * Stops the threads of the path solver and the entity planner, if they have any.
+	 */
+	public void dispose() {
+		pathFinder.dispose();
+		em.dispose();
 	}
+
 	
 	public void save(Json json) {
 		json.writeObjectStart();
 		json.writeValue("width", width);
 		json.writeValue("height", height);
 		json.writeValue("time", time.getTime());
+		// Only tiles with something on them, the rest load as empty
 		json.writeArrayStart("tiles");
-		for(int i = 0; i < width; i++) {
-			for(int j = 0; j < height; j++) {
-				tiles[i][j].save(json);
-			}
+		for(int tile = grid.firstNetwork(); tile >= 0; tile = grid.nextNetwork(tile)) {
+			getTile(tile % width, tile / width).save(json);
 		}
 		json.writeArrayEnd();
 		json.writeObjectEnd();
@@ -250,7 +385,7 @@ public class GameModel {
 		int width = jsonData.getInt("width");
 		int height = jsonData.getInt("height");
 		long timeInHours = jsonData.getLong("time");
-		GameModel gameModel = new GameModel(width, height, timeInHours, false);
+		GameModel gameModel = new GameModel(width, height, timeInHours);
 
 		JsonValue tileData = jsonData.get("tiles");
 
@@ -258,15 +393,18 @@ public class GameModel {
 		for(int i = 0; i < tileData.size; i++) {
 			tileValue = tileData.get(i);
 			Tile tile = Tile.load(json, tileValue, gameModel);
-			gameModel.tiles[tile.x][tile.y] = tile;
+			gameModel.scheduleNetworkRules(tile.getId());
 		}
 		
+		// Saves don't have entities yet
 		JsonValue entityData = jsonData.get("entities");
-		JsonValue entityValue;
-		for(int i = 0; i < entityData.size; i++) {
-			entityValue = entityData.get(i);
-			Entity entity = Entity.load(json, entityValue, gameModel);
-			gameModel.em.addEntity(entity);
+		if(entityData != null) {
+			JsonValue entityValue;
+			for(int i = 0; i < entityData.size; i++) {
+				entityValue = entityData.get(i);
+				Entity entity = Entity.load(json, entityValue, gameModel);
+				gameModel.em.addEntity(entity);
+			}
 		}
 		
 
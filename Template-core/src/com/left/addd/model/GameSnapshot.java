@@ -0,0 +1,173 @@
+package com.left.addd.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What the views need to draw a GameModel, copied out of it at the end of an update
+ * so they can read it while the model goes on, on another thread if need be.
+ * A snapshot taken with {@link #take(GameModel, GameSnapshot)} never changes once taken. Its roads are
+ * a copy that shares the chunks that didn't change with the previous snapshot, or the same copy if nothing did.
+ * <p>
+ * Where the views read on the thread that updates the model, {@link #takeLive(GameModel, GameSnapshot, GameSnapshot)}
+ * fills a snapshot nobody reads any more instead, and hands out the model's own roads,
+ * so nothing is made on frames without new entities or road edits.
+ */
+public class GameSnapshot {
+	public final int width;
+	public final int height;
+	/** Counts the snapshots of a model, so views can tell a refilled snapshot from the one they drew */
+	private long serial;
+	private long time;
+	private int networkVersion;
+	private WorldGrid grid;
+	private int count;
+	private Entity[] entities;
+	/** Current tile id of each entity, then its next tile id */
+	private int[] tiles;
+	private int[] moveDurations;
+	private Entity[] targets;
+
+	private GameSnapshot(GameModel model, int capacity) {
+		this.width = model.width;
+		this.height = model.height;
+		this.count = 0;
+		this.entities = new Entity[capacity];
+		this.tiles = new int[2 * capacity];
+		this.moveDurations = new int[capacity];
+		this.targets = new Entity[capacity];
+	}
+
+	/**
+	 * Takes a snapshot of the model for readers on another thread. Must be called on the thread that updates it.
+	 *
+	 * @param previous Snapshot taken before, to share the roads with, or null
+	 */
+	public static GameSnapshot take(GameModel model, GameSnapshot previous) {
+		WorldGrid live = model.getGrid();
+		WorldGrid grid;
+		if(previous != null && previous.grid.getWrites() == live.getWrites()) {
+			grid = previous.grid;
+		} else {
+			grid = live.copy(previous == null ? null : previous.grid);
+		}
+		GameSnapshot snapshot = new GameSnapshot(model, model.getEntities().size());
+		snapshot.fill(model, previous, grid);
+		return snapshot;
+	}
+
+	/**
+	 * Takes a snapshot of the model for readers on the thread that updates it, which is only good
+	 * until the model next changes.
+	 *
+	 * @param previous Snapshot taken before, or null
+	 * @param reuse Snapshot of the model nobody reads any more, to take this one into, or null to make one
+	 */
+	public static GameSnapshot takeLive(GameModel model, GameSnapshot previous, GameSnapshot reuse) {
+		GameSnapshot snapshot = reuse == null ? new GameSnapshot(model, model.getEntities().size()) : reuse;
+		snapshot.fill(model, previous, model.getGrid());
+		return snapshot;
+	}
+
+	private void fill(GameModel model, GameSnapshot previous, WorldGrid grid) {
+		this.serial = previous == null ? 0 : previous.serial + 1;
+		this.time = model.getTime().getTime();
+		this.networkVersion = model.getNetworkVersion();
+		this.grid = grid;
+		List<Entity> pool = model.getEntities();
+		int size = pool.size();
+		if(size > entities.length) {
+			int capacity = Math.max(size, entities.length * 2);
+			entities = new Entity[capacity];
+			tiles = new int[2 * capacity];
+			moveDurations = new int[capacity];
+			targets = new Entity[capacity];
+		} else if(size < count) {
+			// Let go of the entities that are gone
+			Arrays.fill(entities, size, count, null);
+			Arrays.fill(targets, size, count, null);
+		}
+		this.count = size;
+		for(int i = 0; i < size; i++) {
+			Entity entity = pool.get(i);
+			entities[i] = entity;
+			tiles[2 * i] = entity.getCurrentTileId();
+			tiles[2 * i + 1] = entity.getNextTileId();
+			moveDurations[i] = entity.getMoveDuration();
+			targets[i] = entity.getTargetEntity();
+		}
+	}
+
+	/**
+	 * @return Number of snapshots of the model taken before this one.
+	 */
+	public long getSerial() {
+		return serial;
+	}
+
+	/**
+	 * @return In game time, in hours.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public long getHour() {
+		return time % 24;
+	}
+
+	public long getDay() {
+		return time / 24;
+	}
+
+	/**
+	 * @return The model's network version, which changes whenever the roads did.
+	 */
+	public int getNetworkVersion() {
+		return networkVersion;
+	}
+
+	/**
+	 * @return The roads as they were, a copy unless the snapshot was taken with takeLive.
+	 */
+	public WorldGrid getGrid() {
+		return grid;
+	}
+
+	public int getEntityCount() {
+		return count;
+	}
+
+	/**
+	 * Entities themselves are only good for telling them apart and for what doesn't change about them,
+	 * like their type. Anything else about them goes through the snapshot.
+	 */
+	public Entity getEntity(int i) {
+		return entities[i];
+	}
+
+	/**
+	 * @return Tile id the entity stood on.
+	 */
+	public int getCurrentTile(int i) {
+		return tiles[2 * i];
+	}
+
+	/**
+	 * @return Tile id the entity was moving to, the same as its current tile if it wasn't moving.
+	 */
+	public int getNextTile(int i) {
+		return tiles[2 * i + 1];
+	}
+
+	public int getMoveDuration(int i) {
+		return moveDurations[i];
+	}
+
+	/**
+	 * @return Entity it was heading for, or null.
+	 */
+	public Entity getTarget(int i) {
+		return targets[i];
+	}
+}
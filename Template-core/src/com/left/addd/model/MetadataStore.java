@@ -0,0 +1,206 @@
+package com.left.addd.model;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * Metadata of the entities of a GameModel, such as their names and descriptions, by entity id.
+ * Keys are interned into a schema once, each with the kind of value it holds, and every key has a column
+ * of ints indexed by entity id: the value itself for ints, an index into a string table for strings.
+ * Equal strings are only kept once however many entities share them. A lookup by key id
+ * is two array reads and makes nothing, which is what views asking every frame should use.
+ * <p>
+ * The schema only ever grows, so key ids, like {@link #NAME}, stay good for as long as the model.
+ * There are at most {@link #MAX_KEYS} keys.
+ */
+public class MetadataStore {
+	public enum Kind {
+		STRING, INT
+	}
+
+	/** Id of no key or no string */
+	public static final int NONE = -1;
+	/** Which keys an entity has a value for is kept as a bit per key */
+	public static final int MAX_KEYS = 64;
+	/** Name of the entity, shown as its label */
+	public static final int NAME = 0;
+	/** What the entity is, for its tooltip */
+	public static final int DESCRIPTION = 1;
+
+	// Schema
+	private final ObjectIntMap<String> keyIds;
+	private final Array<String> keyNames;
+	private final Array<Kind> keyKinds;
+
+	// String table
+	private final ObjectIntMap<String> stringIds;
+	private final Array<String> strings;
+
+	/** Values of each key by entity id, allocated once an entity has a value for the key */
+	private int[][] columns;
+	/** Bit per key an entity has a value for, by entity id */
+	private long[] present;
+
+	public MetadataStore() {
+		this.keyIds = new ObjectIntMap<String>();
+		this.keyNames = new Array<String>();
+		this.keyKinds = new Array<Kind>();
+		this.stringIds = new ObjectIntMap<String>();
+		this.strings = new Array<String>();
+		this.columns = new int[MAX_KEYS][];
+		this.present = new long[0];
+		getKey("Name", Kind.STRING);
+		getKey("Description", Kind.STRING);
+	}
+
+	// *** Schema ***
+
+	/**
+	 * Finds the key, adding it to the schema if it's new.
+	 *
+	 * @return Id of the key.
+	 * @throws IllegalArgumentException if the key holds another kind of value, or the schema is full.
+	 */
+	public int getKey(String name, Kind kind) {
+		int key = keyIds.get(name, NONE);
+		if(key != NONE) {
+			if(keyKinds.get(key) != kind) {
+				throw new IllegalArgumentException("Metadata " + name + " holds " + keyKinds.get(key) + ", not " + kind);
+			}
+			return key;
+		}
+		if(keyNames.size == MAX_KEYS) {
+			throw new IllegalArgumentException("No room for metadata " + name + ", there are already " + MAX_KEYS + " keys");
+		}
+		key = keyNames.size;
+		keyIds.put(name, key);
+		keyNames.add(name);
+		keyKinds.add(kind);
+		return key;
+	}
+
+	/**
+	 * @return Id of the key, or NONE if no entity ever had it.
+	 */
+	public int findKey(String name) {
+		return keyIds.get(name, NONE);
+	}
+
+	public int getKeyCount() {
+		return keyNames.size;
+	}
+
+	public String getKeyName(int key) {
+		return keyNames.get(key);
+	}
+
+	public Kind getKeyKind(int key) {
+		return keyKinds.get(key);
+	}
+
+	// *** String table ***
+
+	/**
+	 * @return Id of the string in the table, adding it if it's new.
+	 */
+	public int intern(String s) {
+		int id = stringIds.get(s, NONE);
+		if(id == NONE) {
+			id = strings.size;
+			stringIds.put(s, id);
+			strings.add(s);
+		}
+		return id;
+	}
+
+	public String getString(int id) {
+		return id == NONE ? null : strings.get(id);
+	}
+
+	/**
+	 * @return Number of different strings kept.
+	 */
+	public int getStringCount() {
+		return strings.size;
+	}
+
+	// *** Values ***
+
+	public void setString(int entity, int key, String value) {
+		if(value == null) {
+			remove(entity, key);
+			return;
+		}
+		checkKind(key, Kind.STRING);
+		set(entity, key, intern(value));
+	}
+
+	public void setInt(int entity, int key, int value) {
+		checkKind(key, Kind.INT);
+		set(entity, key, value);
+	}
+
+	public void remove(int entity, int key) {
+		if(entity < present.length) {
+			present[entity] &= ~(1L << key);
+		}
+	}
+
+	public boolean has(int entity, int key) {
+		return entity < present.length && (present[entity] & (1L << key)) != 0;
+	}
+
+	/**
+	 * @return The string the entity has for the key, or null if it has none.
+	 */
+	public String getString(int entity, int key) {
+		if(!has(entity, key) || keyKinds.get(key) != Kind.STRING) {
+			return null;
+		}
+		return strings.get(columns[key][entity]);
+	}
+
+	/**
+	 * @return The int the entity has for the key, or otherwise if it has none.
+	 */
+	public int getInt(int entity, int key, int otherwise) {
+		if(!has(entity, key) || keyKinds.get(key) != Kind.INT) {
+			return otherwise;
+		}
+		return columns[key][entity];
+	}
+
+	/**
+	 * @return The value the entity has for the key whatever its kind, or null if it has none.
+	 *         Boxes ints into an Integer, so prefer the typed getters.
+	 */
+	public Object get(int entity, int key) {
+		if(!has(entity, key)) {
+			return null;
+		}
+		int value = columns[key][entity];
+		return keyKinds.get(key) == Kind.STRING ? strings.get(value) : Integer.valueOf(value);
+	}
+
+	private void checkKind(int key, Kind kind) {
+		if(keyKinds.get(key) != kind) {
+			throw new IllegalArgumentException("Metadata " + keyNames.get(key) + " holds " + keyKinds.get(key) + ", not " + kind);
+		}
+	}
+
+	private void set(int entity, int key, int value) {
+		if(entity >= present.length) {
+			present = Arrays.copyOf(present, Math.max(entity + 1, present.length * 2));
+		}
+		int[] column = columns[key];
+		if(column == null || entity >= column.length) {
+			int capacity = Math.max(present.length, entity + 1);
+			column = column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+			columns[key] = column;
+		}
+		column[entity] = value;
+		present[entity] |= 1L << key;
+	}
+}
@@ -40,8 +40,9 @@ public class NPC extends Entity {
 	@Override
 	public void save(Json json) {
 		json.writeObjectStart("npc");
-		json.writeValue("x", this.currentTile.x);
-		json.writeValue("y", this.currentTile.y);
+		Tile tile = getCurrentTile();
+		json.writeValue("x", tile.x);
+		json.writeValue("y", tile.y);
 		json.writeValue("entity_type", "building");
 		json.writeValue("npc_type", this.type.name());
 		json.writeObjectEnd();
@@ -1,65 +1,94 @@
 package com.left.addd.model;
 
-import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 
-public class Network implements Disposable {
+/**
+ * The network on a Tile. A Network made with {@link #Network(NetworkType)} only says what to put
+ * on a tile with {@link Tile#setNetwork(Network)}; the ones handed out by {@link Tile#getNetwork()}
+ * are views onto the GameModel's {@link WorldGrid}.
+ * Views only read the links: a network is always connected to every neighbour of its type,
+ * and links only change when the network on a tile is set or cleared.
+ */
+public class Network {
 
 	public final NetworkType type;
 
-	private Network[] neighbours;
-	
+	/** Grid and tile id this is a view of, or null and -1 for a Network that isn't placed */
+	private final WorldGrid grid;
+	private final int tile;
+
 	public Network(NetworkType type) {
+		this(type, null, -1);
+	}
+
+	Network(NetworkType type, WorldGrid grid, int tile) {
 		this.type = type;
-		this.neighbours = new Network[Direction.values().length];
+		this.grid = grid;
+		this.tile = tile;
 	}
 
 	/**
-	 * Creates a new Network with appropriate connections.
-	 * The connections can be null.
+	 * @return The connected network in that direction, or null.
 	 */
-	public Network(NetworkType type, Network north, Network east, Network south, Network west) {
-		this(type);
-		connect(Direction.NORTH, north);
-		connect(Direction.EAST, east);
-		connect(Direction.SOUTH, south);
-		connect(Direction.WEST, west);
+	public Network getNeighbour(Direction dir) {
+		if(!isConnected(dir)) {
+			return null;
+		}
+		int n = grid.neighbour(tile, dir.ordinal());
+		return new Network(grid.getType(n), grid, n);
 	}
 
-	public Network getNeighbour(Direction dir) {
-		return neighbours[dir.ordinal()];
+	/**
+	 * @return Connections as a bit mask indexed by Direction ordinal.
+	 */
+	public int getLinks() {
+		return grid == null ? 0 : grid.getLinks(tile);
+	}
+
+	/**
+	 * @return true if this network is connected to the one in that direction.
+	 */
+	public boolean isConnected(Direction dir) {
+		return (getLinks() & dir.bit()) != 0;
 	}
-	
-	// *** Networking ***
-
-	public boolean connect(Direction dir, Network n) {
-		if(n == null || this.type != n.type)
-			return false;
-		neighbours[dir.ordinal()] = n;
-		n.neighbours[dir.opposite().ordinal()] = this;
-		return true;
+
+	/**
+	 * Puts the tile ids of the connected networks into out, in Direction order.
+	 *
+	 * @param out Room for at least 4 tile ids
+	 * @return Number of tile ids put in out.
+	 */
+	public int getNeighbours(int[] out) {
+		return grid == null ? 0 : grid.getNeighbours(tile, grid.getLinks(tile), out);
 	}
 
-	public boolean disconnect(Direction dir) {
-		Network n = neighbours[dir.ordinal()];
-		if(n != null) {
-			n.neighbours[dir.opposite().ordinal()] = null;
-			neighbours[dir.ordinal()] = null;
+	/**
+	 * Calls the visitor for each connected network, in Direction order.
+	 */
+	public void forEachNeighbour(WorldGrid.NeighbourVisitor visitor) {
+		if(grid != null) {
+			grid.forEachNeighbour(tile, grid.getLinks(tile), visitor);
 		}
-		return true;
 	}
-	
+
 	// *** Rules ***
 
-	public void update(int delta) {
+	/**
+	 * Rules for the network on a tile, run straight on the grid by the GameModel's
+	 * {@link TileScheduler} every {@link NetworkType#period} ticks. Types with a period of 0 have none.
+	 *
+	 * @param tile Tile id of a tile with a network
+	 * @param delta Ticks since they last ran
+	 */
+	static void update(WorldGrid grid, int tile, int delta) {
 	}
 
 	// *** Serialization ***
-	
+
 	/**
 	 * Serialize a Tile into json.
-	 * 
+	 *
 	 * @param json Json serializer, which will now have the tile's data.
 	 * @param tile Tile to save
 	 */
@@ -71,23 +100,12 @@ public class Network implements Disposable {
 
 	/**
 	 * Create a Tile using a json string.
-	 * 
+	 *
 	 * @param data
-	 * @return
+	 * @return A Network to put on the tile being loaded.
 	 */
-	public static Network load(Json json, JsonValue jsonData, Network south, Network west) {
+	public static Network load(Json json, JsonValue jsonData) {
 		NetworkType type = NetworkType.valueOf(jsonData.getString("type"));
-		return new Network(type, null, null, south, west);
-	}
-
-	/**
-	 * Call this when this is slated for deletion
-	 */
-	@Override
-	public void dispose() {
-		// Remove all network references to avoid leak
-		for(Direction dir: Direction.values()) {
-			disconnect(dir);
-		}
+		return new Network(type);
 	}
 }
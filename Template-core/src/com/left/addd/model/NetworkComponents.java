@@ -0,0 +1,404 @@
+package com.left.addd.model;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Labels every tile of the network with the connected piece of network it belongs to,
+ * so questions like "can anything on this tile ever get to that tile" take a couple of lookups.
+ *
+ * Labels are merged with union-find when a network tile joins pieces together.
+ * When a tile is taken away, floods from its neighbours run side by side until they meet;
+ * the ones that run out before meeting are pieces that broke off and get new labels.
+ * Only those smaller pieces are visited, the biggest one keeps its label.
+ */
+public class NetworkComponents {
+	public static final int NONE = -1;
+	/** Floods from the neighbours of a removed tile, one per direction */
+	private static final int FLOODS = 4;
+
+	private final GameModel gameModel;
+	private final int width;
+	private final int height;
+	private boolean built;
+
+	/** Label of each tile, or NONE off the network. Labels lead to their component through parent. */
+	private final ChunkedIntGrid label;
+	// Union-find over labels
+	private int[] parent;
+	/** Number of tiles in the component, for labels that are a root */
+	private int[] size;
+	private int labelCount;
+	private int componentCount;
+
+	// Removal floods
+	private final ChunkedIntGrid markGeneration;
+	private final ChunkedIntGrid markFlood;
+	private int generation;
+	private final IntArray[] visited;
+	private final int[] head;
+	/** Floods that turned out to be a piece of their own */
+	private final boolean[] exhausted;
+	/** Flood each flood has been merged into, a tiny union-find of its own */
+	private final int[] group;
+
+	public NetworkComponents(GameModel gameModel) {
+		this.gameModel = gameModel;
+		this.width = gameModel.width;
+		this.height = gameModel.height;
+		this.built = false;
+		this.label = new ChunkedIntGrid(width, height, NONE);
+		this.parent = new int[0];
+		this.size = new int[0];
+		this.markGeneration = new ChunkedIntGrid(width, height, 0);
+		this.markFlood = new ChunkedIntGrid(width, height, 0);
+		this.visited = new IntArray[FLOODS];
+		for(int i = 0; i < FLOODS; i++) {
+			visited[i] = new IntArray();
+		}
+		this.head = new int[FLOODS];
+		this.exhausted = new boolean[FLOODS];
+		this.group = new int[FLOODS];
+	}
+
+	// *** Queries ***
+
+	/**
+	 * @param tile Tile id, as given by {@link Tile#getId()}
+	 * @return Component of the tile, or NONE if it has no network.
+	 *         Component numbers stay the same until the network is changed.
+	 */
+	public int getComponent(int tile) {
+		ensureBuilt();
+		int l = label.get(tile);
+		return l == NONE ? NONE : root(l);
+	}
+
+	public int getComponent(int x, int y) {
+		if(0 > x || x >= width || 0 > y || y >= height) {
+			return NONE;
+		}
+		return getComponent(x + y * width);
+	}
+
+	/**
+	 * @return true if both tiles are on the same connected piece of network.
+	 */
+	public boolean isConnected(int a, int b) {
+		int component = getComponent(a);
+		return component != NONE && component == getComponent(b);
+	}
+
+	/**
+	 * @param component As returned by {@link #getComponent(int)}
+	 * @return Number of network tiles in the component.
+	 */
+	public int getComponentSize(int component) {
+		ensureBuilt();
+		return size[component];
+	}
+
+	/**
+	 * @return Number of separate pieces of network.
+	 */
+	public int getComponentCount() {
+		ensureBuilt();
+		return componentCount;
+	}
+
+	/**
+	 * Labels the whole map if that hasn't happened yet.
+	 * Queries do this on their own, but only on the thread that changes the network.
+	 */
+	public void ensureBuilt() {
+		if(built) {
+			return;
+		}
+		rebuild();
+		built = true;
+	}
+
+	// *** Updates ***
+
+	/**
+	 * Call this after the network on a tile was set or cleared.
+	 */
+	public void tileChanged(Tile tile) {
+		if(!built) {
+			return;
+		}
+		int id = tile.getId();
+		if(label.get(id) != NONE) {
+			remove(id);
+		}
+		if(tile.hasNetwork()) {
+			add(id);
+		}
+		if(labelCount > 2 * width * height + 64) {
+			// Too many labels left behind by splits, start afresh
+			rebuild();
+		}
+	}
+
+	private void add(int tile) {
+		int mask = links(tile);
+		for(int dir = 0; dir < 4; dir++) {
+			if((mask & (1 << dir)) == 0) {
+				continue;
+			}
+			int n = neighbour(tile, dir);
+			if(label.get(n) == NONE) {
+				continue;
+			}
+			int r = find(label.get(n));
+			if(label.get(tile) == NONE) {
+				label.set(tile, r);
+				size[r]++;
+			} else {
+				union(find(label.get(tile)), r);
+			}
+		}
+		if(label.get(tile) == NONE) {
+			label.set(tile, newLabel(1));
+		}
+	}
+
+	private void remove(int tile) {
+		int r = find(label.get(tile));
+		label.set(tile, NONE);
+		size[r]--;
+		if(size[r] == 0) {
+			componentCount--;
+			return;
+		}
+
+		// Start a flood from every neighbour that was on the same component
+		nextGeneration();
+		int floods = 0;
+		for(int dir = 0; dir < 4; dir++) {
+			int n = neighbourInBounds(tile, dir);
+			if(n != NONE && label.get(n) != NONE && find(label.get(n)) == r) {
+				visited[floods].clear();
+				visited[floods].add(n);
+				head[floods] = 0;
+				group[floods] = floods;
+				exhausted[floods] = false;
+				mark(n, floods);
+				floods++;
+			}
+		}
+		if(floods < 2) {
+			return;
+		}
+
+		int active = floods;
+		while(active > 1) {
+			for(int f = 0; f < floods && active > 1; f++) {
+				if(exhausted[f] || head[f] >= visited[f].size) {
+					continue;
+				}
+				int u = visited[f].get(head[f]++);
+				int mask = links(u);
+				for(int dir = 0; dir < 4; dir++) {
+					if((mask & (1 << dir)) == 0) {
+						continue;
+					}
+					int v = neighbour(u, dir);
+					if(label.get(v) == NONE) {
+						continue;
+					}
+					if(markGeneration.get(v) != generation) {
+						mark(v, f);
+						visited[f].add(v);
+					} else {
+						int a = groupOf(f);
+						int b = groupOf(markFlood.get(v));
+						if(a != b) {
+							// Met another flood, so both are still one piece
+							group[b] = a;
+							active--;
+						}
+					}
+				}
+			}
+			// A group whose floods all ran dry broke off
+			for(int f = 0; f < floods && active > 1; f++) {
+				if(groupOf(f) != f || exhausted[f] || !isDry(f, floods)) {
+					continue;
+				}
+				int piece = newLabel(0);
+				for(int g = 0; g < floods; g++) {
+					if(groupOf(g) == f) {
+						exhausted[g] = true;
+						IntArray tiles = visited[g];
+						for(int i = 0; i < tiles.size; i++) {
+							label.set(tiles.get(i), piece);
+						}
+						size[piece] += tiles.size;
+					}
+				}
+				size[r] -= size[piece];
+				active--;
+			}
+		}
+	}
+
+	/**
+	 * @return true if every flood in the group led by f has run dry.
+	 */
+	private boolean isDry(int f, int floods) {
+		for(int g = 0; g < floods; g++) {
+			if(groupOf(g) == f && head[g] < visited[g].size) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int groupOf(int f) {
+		while(group[f] != f) {
+			f = group[f];
+		}
+		return f;
+	}
+
+	private void mark(int tile, int flood) {
+		markGeneration.set(tile, generation);
+		markFlood.set(tile, flood);
+	}
+
+	private void nextGeneration() {
+		if(generation == Integer.MAX_VALUE) {
+			markGeneration.clear();
+			generation = 0;
+		}
+		generation++;
+	}
+
+	private void rebuild() {
+		label.clear();
+		labelCount = 0;
+		componentCount = 0;
+		IntArray queue = visited[0];
+		WorldGrid grid = gameModel.getGrid();
+		for(int tile = grid.firstNetwork(); tile >= 0; tile = grid.nextNetwork(tile)) {
+			if(label.get(tile) != NONE) {
+				continue;
+			}
+			int l = newLabel(0);
+			queue.clear();
+			queue.add(tile);
+			label.set(tile, l);
+			for(int i = 0; i < queue.size; i++) {
+				int u = queue.get(i);
+				int mask = links(u);
+				for(int dir = 0; dir < 4; dir++) {
+					if((mask & (1 << dir)) != 0) {
+						int v = neighbour(u, dir);
+						if(label.get(v) == NONE) {
+							label.set(v, l);
+							queue.add(v);
+						}
+					}
+				}
+			}
+			size[l] = queue.size;
+		}
+	}
+
+	// *** Union-find ***
+
+	private int newLabel(int tiles) {
+		if(labelCount == parent.length) {
+			int capacity = Math.max(64, labelCount * 2);
+			parent = Arrays.copyOf(parent, capacity);
+			size = Arrays.copyOf(size, capacity);
+		}
+		int l = labelCount++;
+		parent[l] = l;
+		size[l] = tiles;
+		componentCount++;
+		return l;
+	}
+
+	/**
+	 * Root of a label, shortening the way there for next time.
+	 */
+	private int find(int l) {
+		while(parent[l] != l) {
+			parent[l] = parent[parent[l]];
+			l = parent[l];
+		}
+		return l;
+	}
+
+	/**
+	 * Root of a label without changing anything, so queries are safe from other threads.
+	 */
+	private int root(int l) {
+		while(parent[l] != l) {
+			l = parent[l];
+		}
+		return l;
+	}
+
+	private void union(int a, int b) {
+		if(a == b) {
+			return;
+		}
+		if(size[a] < size[b]) {
+			int swap = a;
+			a = b;
+			b = swap;
+		}
+		parent[b] = a;
+		size[a] += size[b];
+		componentCount--;
+	}
+
+	// *** Tiles ***
+
+	/**
+	 * @return Connections of a tile's network as a bit mask indexed by Direction ordinal,
+	 *         or -1 if the tile has no network.
+	 */
+	private int links(int tile) {
+		WorldGrid grid = gameModel.getGrid();
+		return grid.hasNetwork(tile) ? grid.getLinks(tile) : -1;
+	}
+
+	/**
+	 * Neighbouring tile id, assuming it exists.
+	 */
+	private int neighbour(int tile, int direction) {
+		switch(direction) {
+		case 0:
+			return tile + width;
+		case 1:
+			return tile + 1;
+		case 2:
+			return tile - width;
+		default:
+			return tile - 1;
+		}
+	}
+
+	/**
+	 * Neighbouring tile id, or NONE at the edge of the map.
+	 */
+	private int neighbourInBounds(int tile, int direction) {
+		int x = tile % width;
+		int y = tile / width;
+		switch(direction) {
+		case 0:
+			return y + 1 < height ? tile + width : NONE;
+		case 1:
+			return x + 1 < width ? tile + 1 : NONE;
+		case 2:
+			return y > 0 ? tile - width : NONE;
+		default:
+			return x > 0 ? tile - 1 : NONE;
+		}
+	}
+}
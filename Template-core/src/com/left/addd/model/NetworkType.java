@@ -1,5 +1,12 @@
 package com.left.addd.model;
 
 public enum NetworkType {
-	NONE, ROAD;
+	NONE(0), ROAD(0);
+
+	/** Ticks between runs of the type's rules in Network.update, 0 if it has none */
+	public final int period;
+
+	private NetworkType(int period) {
+		this.period = period;
+	}
 }
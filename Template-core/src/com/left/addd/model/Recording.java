@@ -0,0 +1,168 @@
+package com.left.addd.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the player did over one session, each command with the tick it ran on, so the session can be
+ * played again against a fresh GameModel as fast as it goes, see {@link #replay(GameModel)}.
+ * The model only ever changes on ticks and through commands, so every replay of a recording
+ * runs exactly the same ticks with exactly the same workload, which makes it a scenario
+ * to compare changes to the engine with.
+ * <p>
+ * A replay goes a tick at a time, as if each frame had run one tick. It comes out the same as the session
+ * as long as the session's path solver finished every batch by the next tick, which a solver with
+ * a per frame budget might not have, and searched without landmarks, whose tables are finished
+ * on whichever frame they happen to be. The synchronous solver without a budget and the threaded one
+ * of desktop both qualify, which the desktop RecordingCheck plays scripted sessions to make sure of.
+ */
+public class Recording {
+	/** Player changed the game speed, with its UIView.Speed ordinal */
+	public static final String SPEED = "speed";
+	/** Player saved the game, with the slot */
+	public static final String SAVE = "save";
+
+	/**
+	 * A player command that can be written down and run again from what it wrote.
+	 */
+	public interface Replayable extends Simulation.Command {
+		/**
+		 * @return Name the command is recorded under, which {@link Recording#toCommand(Event)} knows.
+		 */
+		String getName();
+
+		/**
+		 * @return Everything the command needs to run again.
+		 */
+		int[] getArguments();
+	}
+
+	/**
+	 * Something the player did that doesn't change the model, such as changing the game speed,
+	 * posted like a command so it is recorded on the tick it came in.
+	 */
+	public static class Marker implements Replayable {
+		private final String name;
+		private final int[] arguments;
+
+		public Marker(String name, int... arguments) {
+			this.name = name;
+			this.arguments = arguments;
+		}
+
+		@Override
+		public void run(GameModel model) {
+			// Only there to be recorded
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public int[] getArguments() {
+			return arguments;
+		}
+	}
+
+	/**
+	 * A command as it was recorded.
+	 */
+	public static class Event {
+		/** Game time in hours the command ran at, after that tick and before the next */
+		public final long tick;
+		public final String name;
+		public final int[] arguments;
+
+		public Event(long tick, String name, int[] arguments) {
+			this.tick = tick;
+			this.name = name;
+			this.arguments = arguments;
+		}
+	}
+
+	/** Save data the session started from, or null for a new game */
+	private final String start;
+	private final ArrayList<Event> events;
+	/** Game time in hours the session ended at */
+	private long end;
+
+	/**
+	 * @param start Save data the session starts from, or null if it starts a new game.
+	 * @param time Game time in hours the session starts at
+	 */
+	public Recording(String start, long time) {
+		this.start = start;
+		this.events = new ArrayList<Event>();
+		this.end = time;
+	}
+
+	public String getStart() {
+		return start;
+	}
+
+	/**
+	 * Writes the command down as having run at the given time. Commands have to be recorded in the order they ran.
+	 */
+	public void record(long tick, Replayable command) {
+		events.add(new Event(tick, command.getName(), command.getArguments().clone()));
+		end = Math.max(end, tick);
+	}
+
+	public List<Event> getEvents() {
+		return events;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * @param end Game time in hours the session ended at, at least that of the last command.
+	 */
+	public void setEnd(long end) {
+		this.end = Math.max(end, this.end);
+	}
+
+	/**
+	 * Runs the model to the end of the recording a tick at a time, without waiting for real time.
+	 * Each command runs after the tick it was recorded at, followed by an update without ticks
+	 * like the frame it came in.
+	 *
+	 * @param model Fresh model made from {@link #getStart()}
+	 */
+	public void replay(GameModel model) {
+		float tick = Time.getRealTimeFromTicks(1);
+		int next = 0;
+		while(true) {
+			long now = model.getTime().getTime();
+			boolean ran = false;
+			while(next < events.size() && events.get(next).tick <= now) {
+				Simulation.Command command = toCommand(events.get(next++));
+				if(command != null) {
+					command.run(model);
+					ran = true;
+				}
+			}
+			if(ran) {
+				model.update(0);
+			}
+			if(now >= end) {
+				return;
+			}
+			model.update(tick);
+		}
+	}
+
+	/**
+	 * @return The command the event was recorded from, or null if running it again wouldn't change the model.
+	 */
+	public static Simulation.Command toCommand(Event event) {
+		if(ToggleRoad.NAME.equals(event.name)) {
+			return new ToggleRoad(event.arguments[0], event.arguments[1]);
+		}
+		// Speed changes and saves, which a replay runs without
+		return null;
+	}
+}
@@ -0,0 +1,54 @@
+package com.left.addd.model;
+
+/**
+ * Runs a model through another simulation and writes every {@link Recording.Replayable} command down
+ * in a {@link Recording}, with the time it ran at. Commands are recorded as they run,
+ * on whichever thread updates the model, so they get the tick they really ran after.
+ */
+public class RecordingSimulation implements Simulation {
+	private final Simulation simulation;
+	private final Recording recording;
+
+	public RecordingSimulation(Simulation simulation, Recording recording) {
+		this.simulation = simulation;
+		this.recording = recording;
+	}
+
+	public Recording getRecording() {
+		return recording;
+	}
+
+	@Override
+	public void update(float delta) {
+		simulation.update(delta);
+	}
+
+	@Override
+	public void post(final Command command) {
+		if(!(command instanceof Recording.Replayable)) {
+			simulation.post(command);
+			return;
+		}
+		simulation.post(new Command() {
+			@Override
+			public void run(GameModel model) {
+				recording.record(model.getTime().getTime(), (Recording.Replayable) command);
+				command.run(model);
+			}
+		});
+	}
+
+	@Override
+	public GameSnapshot getSnapshot() {
+		return simulation.getSnapshot();
+	}
+
+	/**
+	 * Ends the recording at the time of the last snapshot, once the model stopped.
+	 */
+	@Override
+	public void dispose() {
+		simulation.dispose();
+		recording.setEnd(simulation.getSnapshot().getTime());
+	}
+}
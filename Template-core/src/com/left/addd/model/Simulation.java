@@ -0,0 +1,46 @@
+package com.left.addd.model;
+
+/**
+ * Runs a GameModel for the screen that shows it. The screen only ever hands it time and commands,
+ * and draws from the {@link GameSnapshot}s it publishes, so the model is free to be updated
+ * on a thread of its own where there are threads.
+ */
+public interface Simulation {
+
+	/**
+	 * A change to the model from the player, run between updates on the thread that updates the model.
+	 */
+	public interface Command {
+		void run(GameModel model);
+	}
+
+	/**
+	 * Called every frame from the render thread, also while the game is paused.
+	 *
+	 * @param delta Real time passed in seconds, already multiplied by the game speed, 0 while paused.
+	 */
+	void update(float delta);
+
+	/**
+	 * Queues a command for before the next update. Commands run in the order they were posted,
+	 * even while the game is paused.
+	 */
+	void post(Command command);
+
+	/**
+	 * @return The latest snapshot of the model, never null.
+	 */
+	GameSnapshot getSnapshot();
+
+	/**
+	 * Stops any threads the simulation started. The model can be disposed of once this returned.
+	 */
+	void dispose();
+
+	/**
+	 * Makes a simulation for each GameModel, which lets every platform pick its own.
+	 */
+	public interface Factory {
+		Simulation create(GameModel model);
+	}
+}
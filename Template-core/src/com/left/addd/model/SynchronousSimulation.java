@@ -0,0 +1,63 @@
+package com.left.addd.model;
+
+import java.util.ArrayList;
+
+/**
+ * Updates the model on the render thread, the same frame the time comes in, for platforms without threads like HTML.
+ * A snapshot is taken whenever a command or a tick ran. The views read it on this thread before the model
+ * changes again, so it is taken with {@link GameSnapshot#takeLive} into the one before,
+ * and a frame only makes something when there are more entities than the spare has room for.
+ */
+public class SynchronousSimulation implements Simulation {
+	private final GameModel model;
+	private final ArrayList<Command> commands;
+	private GameSnapshot snapshot;
+	/** Snapshot before the latest, to take the next one into */
+	private GameSnapshot spare;
+
+	public SynchronousSimulation(GameModel model) {
+		this.model = model;
+		this.commands = new ArrayList<Command>();
+		this.snapshot = GameSnapshot.takeLive(model, null, null);
+		this.spare = null;
+	}
+
+	@Override
+	public void update(float delta) {
+		boolean changed = !commands.isEmpty();
+		for(int i = 0; i < commands.size(); i++) {
+			commands.get(i).run(model);
+		}
+		commands.clear();
+		if(delta > 0 && model.update(delta) > 0) {
+			changed = true;
+		}
+		if(changed) {
+			GameSnapshot next = GameSnapshot.takeLive(model, snapshot, spare);
+			spare = snapshot;
+			snapshot = next;
+		}
+	}
+
+	@Override
+	public void post(Command command) {
+		commands.add(command);
+	}
+
+	@Override
+	public GameSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public void dispose() {
+		// No threads
+	}
+
+	public static class Factory implements Simulation.Factory {
+		@Override
+		public Simulation create(GameModel model) {
+			return new SynchronousSimulation(model);
+		}
+	}
+}
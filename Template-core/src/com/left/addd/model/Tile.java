@@ -8,6 +8,8 @@ import java.util.ArrayList;
 /**
  * This class is the representation of a discrete unit in a Grid.
  * A Grid is made up of many interconnected Tiles.
+ * Tiles are views onto the GameModel's {@link WorldGrid}, made whenever one is asked for,
+ * so two Tiles are the same tile if they are equal, not if they are identical.
  */
 public class Tile {
 	private static Tile dummyTile;
@@ -16,14 +18,8 @@ public class Tile {
 	public final int x;
 	public final int y;
 
-	private Network network;
-
 	public Tile(GameModel gameModel) {
-		this(gameModel, -1, -1, null);
-	}
-
-	public Tile(GameModel gameModel, int x, int y) {
-		this(gameModel, x, y, null);
+		this(gameModel, -1, -1);
 	}
 
 	/**
@@ -32,21 +28,17 @@ public class Tile {
 	 * @param gameModel Governing model
 	 * @param x coordinate
 	 * @param y coordinate
-	 * @param building Building on this Tile
-	 * @param network Network on this Tile
 	 */
-	public Tile(GameModel gameModel, int x, int y, Network network) {
+	public Tile(GameModel gameModel, int x, int y) {
 		this.gameModel = gameModel;
 		this.x = x;
 		this.y = y;
-
-		this.network = network;
 	}
 
 	public static Tile dummyTile() {
 		if(dummyTile == null) {
 			// never use other methods on dummyTiles
-			dummyTile = new Tile(null, -1, -1, null);
+			dummyTile = new Tile(null, -1, -1);
 		}
 		return dummyTile;
 	}
@@ -55,29 +47,44 @@ public class Tile {
 		return t.equals(dummyTile);
 	}
 
+	/**
+	 * Identifies this tile within its GameModel as a single int, x + y * width.
+	 */
+	public int getId() {
+		return x + y * gameModel.width;
+	}
+
+	/**
+	 * @return A view of the network on this tile, or null.
+	 */
 	public Network getNetwork() {
-		return network;
+		if(gameModel == null) {
+			// The dummy tile has no network
+			return null;
+		}
+		int id = getId();
+		WorldGrid grid = gameModel.getGrid();
+		return grid.hasNetwork(id) ? new Network(grid.getType(id), grid, id) : null;
 	}
 
+	/**
+	 * Puts a network of the given type on this tile, connected to the neighbours with the same type.
+	 */
 	public void setNetwork(Network network) {
-		// connect neighbours if possible
-		for(Direction dir: Direction.values()) {
-			Tile t = getNeighbour(dir);
-			if(t.hasNetwork()) {
-				network.connect(dir, t.getNetwork());
-			}
-		}
-		this.network = network;
+		gameModel.networkChanging(this);
+		gameModel.getGrid().place(getId(), network.type);
+		gameModel.networkChanged(this);
 	}
 
 	public void clearNetwork() {
+		gameModel.networkChanging(this);
 		// disconnect neighbours
-		this.network.dispose();
-		this.network = null;
+		gameModel.getGrid().clear(getId());
+		gameModel.networkChanged(this);
 	}
 
 	public boolean hasNetwork() {
-		return this.network != null;
+		return gameModel != null && gameModel.getGrid().hasNetwork(getId());
 	}
 	
 	public Tile getNeighbour(Direction dir) {
@@ -101,38 +108,46 @@ public class Tile {
 		return Tile.isDummyTile(t) ? defaultTile : t;
 	}
 	
+	/**
+	 * @return Bit mask indexed by Direction ordinal of the neighbouring tiles that have a road.
+	 */
+	public int getRoadNeighbours() {
+		return gameModel == null ? 0 : gameModel.getGrid().getRoadNeighbours(getId());
+	}
+
+	/**
+	 * Neighbouring tiles that have a road. Makes a list and a Tile for each,
+	 * so prefer {@link #getNeighbours(int[])} anywhere that runs often.
+	 */
 	public ArrayList<Tile> getNeighbours() {
-        ArrayList<Tile> Available = new ArrayList<Tile>();
-        for (Direction dir : Direction.values()) {
-            if (checkForNetwork(dir)) {
-                Available.add(getNeighbour(dir));
-            }
-        }
-        return Available;
-    }
-    
-    
-    private boolean checkForNetwork(Direction dir) {
-        if (!this.equals(getNeighbour(dir))) {
-        	if (getNeighbour(dir).getNetwork() != null) {
-        		if (getNeighbour(dir).getNetwork().type == NetworkType.ROAD) {
-                    return true;
-                } else {
-                    return false;
-                }
-        	} else {
-        		return false;
-        	}
-        } else {
-            return false;
-        }
-    }
-
-	// *** Rules ***
-
-	public void update(int delta) {
-		if(network != null) {
-			network.update(delta);
+		ArrayList<Tile> available = new ArrayList<Tile>(4);
+		int mask = getRoadNeighbours();
+		for(int dir = 0; dir < 4; dir++) {
+			if((mask & (1 << dir)) != 0) {
+				available.add(getNeighbour(Direction.get(dir)));
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * Puts the tile ids of the neighbouring tiles that have a road into out, in Direction order.
+	 *
+	 * @param out Room for at least 4 tile ids
+	 * @return Number of tile ids put in out.
+	 */
+	public int getNeighbours(int[] out) {
+		int mask = getRoadNeighbours();
+		return mask == 0 ? 0 : gameModel.getGrid().getNeighbours(getId(), mask, out);
+	}
+
+	/**
+	 * Calls the visitor for each neighbouring tile that has a road, in Direction order.
+	 */
+	public void forEachNeighbour(WorldGrid.NeighbourVisitor visitor) {
+		int mask = getRoadNeighbours();
+		if(mask != 0) {
+			gameModel.getGrid().forEachNeighbour(getId(), mask, visitor);
 		}
 	}
 
@@ -149,7 +164,7 @@ public class Tile {
 		json.writeValue("x", this.x);
 		json.writeValue("y", this.y);
 		if(hasNetwork()) {
-			network.save(json);
+			getNetwork().save(json);
 		}
 		json.writeObjectEnd();
 	}
@@ -158,22 +173,20 @@ public class Tile {
 	 * Create a Tile using a json string.
 	 * 
 	 * @param data
-	 * @return
+	 * @return The loaded tile.
 	 */
 	public static Tile load(Json json, JsonValue jsonData, GameModel gameModel) {
 		int x = jsonData.getInt("x");
 		int y = jsonData.getInt("y");
 
 		JsonValue networkData = jsonData.get("network");
-		Network network = null;
 		if(networkData != null) {
-			// Can only load tiles[x][y-1] and tiles[x-1][y]
-			// because the next ones haven't been initialized yet.
-			network = Network.load(json, networkData, gameModel.getTile(x, y - 1).getNetwork(),
-					gameModel.getTile(x - 1, y).getNetwork());
+			// Connects to the neighbours loaded so far, the ones after connect back to it
+			Network network = Network.load(json, networkData);
+			gameModel.getGrid().place(x + y * gameModel.width, network.type);
 		}
 
-		return new Tile(gameModel, x, y, network);
+		return gameModel.getTile(x, y);
 	}
 
 	/**
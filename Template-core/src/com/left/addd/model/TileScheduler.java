@@ -0,0 +1,151 @@
+package com.left.addd.model;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Runs the behaviour of tiles that have any, each every so many ticks.
+ * Only registered tiles are ever looked at, so a map where nothing is going on
+ * costs nothing per tick however big it is.
+ * Tasks due on the same tick run in the order they were registered.
+ */
+public class TileScheduler {
+
+	/**
+	 * Behaviour of a tile.
+	 */
+	public interface Task {
+		/**
+		 * @param tile Tile id the task was registered for
+		 * @param ticks Ticks since it last ran, its period
+		 */
+		void run(int tile, int ticks);
+	}
+
+	private final PriorityQueue<Entry> queue;
+	/** Registrations of each tile, chained through Entry.next */
+	private final IntMap<Entry> byTile;
+	private long now;
+	private long registered;
+	private int size;
+
+	public TileScheduler(long now) {
+		this.queue = new PriorityQueue<Entry>(16, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry a, Entry b) {
+				if(a.due != b.due) {
+					return a.due < b.due ? -1 : 1;
+				}
+				return a.order < b.order ? -1 : a.order == b.order ? 0 : 1;
+			}
+		});
+		this.byTile = new IntMap<Entry>();
+		this.now = now;
+		this.registered = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Runs the task every period ticks, the first time period ticks from now.
+	 * Registering the same task for the same tile again only changes its period.
+	 *
+	 * @param period Ticks between runs, at least 1. 24 is once a day.
+	 */
+	public void schedule(int tile, Task task, int period) {
+		if(period < 1) {
+			throw new IllegalArgumentException("Period must be at least 1 tick: " + period);
+		}
+		cancel(tile, task);
+		Entry entry = new Entry(tile, task, period, now + period, registered++);
+		entry.next = byTile.get(tile);
+		byTile.put(tile, entry);
+		queue.add(entry);
+		size++;
+	}
+
+	/**
+	 * Stops running the task for the tile, if it was registered.
+	 */
+	public void cancel(int tile, Task task) {
+		Entry previous = null;
+		for(Entry entry = byTile.get(tile); entry != null; previous = entry, entry = entry.next) {
+			if(entry.task == task) {
+				unlink(tile, previous, entry);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stops running every task of the tile.
+	 */
+	public void cancelAll(int tile) {
+		Entry entry = byTile.remove(tile);
+		while(entry != null) {
+			entry.task = null;
+			size--;
+			entry = entry.next;
+		}
+	}
+
+	/**
+	 * Runs every task that is due, as many times as it has come due.
+	 *
+	 * @param time Current tick, the game time in hours
+	 */
+	public void update(long time) {
+		while(!queue.isEmpty() && queue.peek().due <= time) {
+			Entry entry = queue.poll();
+			if(entry.task == null) {
+				// Cancelled, dropped now it came up
+				continue;
+			}
+			now = entry.due;
+			entry.task.run(entry.tile, entry.period);
+			if(entry.task != null) {
+				entry.due += entry.period;
+				queue.add(entry);
+			}
+		}
+		now = time;
+	}
+
+	/**
+	 * @return Number of registered tasks.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void unlink(int tile, Entry previous, Entry entry) {
+		if(previous != null) {
+			previous.next = entry.next;
+		} else if(entry.next != null) {
+			byTile.put(tile, entry.next);
+		} else {
+			byTile.remove(tile);
+		}
+		// The queue drops it when it comes up
+		entry.task = null;
+		size--;
+	}
+
+	private static class Entry {
+		final int tile;
+		final int period;
+		final long order;
+		Task task;
+		long due;
+		Entry next;
+
+		Entry(int tile, Task task, int period, long due, long order) {
+			this.tile = tile;
+			this.task = task;
+			this.period = period;
+			this.due = due;
+			this.order = order;
+		}
+	}
+}
@@ -1,14 +1,26 @@
 package com.left.addd.model;
 
+/**
+ * Game time, advanced in whole ticks of one in-game hour by a fixed-timestep accumulator.
+ * Real time is saved up and paid out as ticks, so the game runs at the same speed however
+ * the frame rate or the speed multiplier goes. After a long frame at most maxTicksPerUpdate ticks
+ * are run, and the rest of the time is dropped rather than made up later,
+ * so a slow frame can't snowball into ever slower ones.
+ */
 public class Time {
+	public static final int DEFAULT_MAX_TICKS_PER_UPDATE = 8;
+
 	/**
 	 * in game time units (hours)
 	 */
 	private long hours;
 	/**
-	 * Real time units (seconds)
+	 * Real time saved up towards the next tick (seconds)
 	 */
 	private float realTime;
+	private int maxTicksPerUpdate;
+	/** Ticks dropped by the catch-up cap so far */
+	private long droppedTicks;
 	// Conversion factor:
 	// 1 seconds = 1 hour in game
 	private static final float CONVERSION = 1;
@@ -20,6 +32,8 @@ public class Time {
 	public Time(long time) {
 		this.hours = time;
 		this.realTime = 0;
+		this.maxTicksPerUpdate = DEFAULT_MAX_TICKS_PER_UPDATE;
+		this.droppedTicks = 0;
 	}
 	
 	public long getTime() {
@@ -36,19 +50,50 @@ public class Time {
 	
 	/**
 	 * Updates in game time.
-	 * @param delta Real time passed in seconds.
-	 * @return number of in game days passed within the real time.
+	 * @param delta Real time passed in seconds, already multiplied by the game speed.
+	 * @return number of ticks, in game hours, to run for the real time, at most maxTicksPerUpdate.
 	 */
 	public int update(float delta) {
 		realTime += delta;
-		int ticks = 0;
-		if(realTime > CONVERSION) {
-			hours++;
-			ticks++;
-			realTime -= CONVERSION;
+		int ticks = getTicksFromRealTime(realTime);
+		if(ticks > maxTicksPerUpdate) {
+			droppedTicks += ticks - maxTicksPerUpdate;
+			ticks = maxTicksPerUpdate;
 		}
+		// Keep only what is short of a whole tick, whatever was dropped
+		realTime -= getRealTimeFromTicks(getTicksFromRealTime(realTime));
+		hours += ticks;
 		return ticks;
 	}
+
+	/**
+	 * @return How far the real time is into the next tick, from 0 to just under 1.
+	 *         Things drawn between two ticks can be placed this far from the one to the other.
+	 */
+	public float getAlpha() {
+		return realTime / CONVERSION;
+	}
+
+	public int getMaxTicksPerUpdate() {
+		return maxTicksPerUpdate;
+	}
+
+	/**
+	 * @param maxTicksPerUpdate Most ticks a single update runs, at least 1. Real time beyond that is dropped.
+	 */
+	public void setMaxTicksPerUpdate(int maxTicksPerUpdate) {
+		if(maxTicksPerUpdate < 1) {
+			throw new IllegalArgumentException("Must run at least 1 tick per update: " + maxTicksPerUpdate);
+		}
+		this.maxTicksPerUpdate = maxTicksPerUpdate;
+	}
+
+	/**
+	 * @return Number of ticks dropped so far because an update was owed more than maxTicksPerUpdate.
+	 */
+	public long getDroppedTicks() {
+		return droppedTicks;
+	}
 	
 	public static float getRealTimeFromTicks(int ticks) {
 		return ticks * CONVERSION;
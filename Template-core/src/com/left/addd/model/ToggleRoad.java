@@ -0,0 +1,36 @@
+package com.left.addd.model;
+
+/**
+ * Builds a road on the tile, or takes away whatever network is there.
+ */
+public class ToggleRoad implements Recording.Replayable {
+	public static final String NAME = "toggleRoad";
+
+	private final int x;
+	private final int y;
+
+	public ToggleRoad(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	@Override
+	public void run(GameModel model) {
+		Tile tile = model.getTile(x, y);
+		if(tile.hasNetwork()) {
+			tile.clearNetwork();
+		} else {
+			tile.setNetwork(new Network(NetworkType.ROAD));
+		}
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public int[] getArguments() {
+		return new int[] { x, y };
+	}
+}
@@ -0,0 +1,337 @@
+package com.left.addd.model;
+
+/**
+ * The tiles of a GameModel, indexed by tile id, x + y * width,
+ * one byte per tile for the type of network on it and one for its connections.
+ * {@link Tile} and {@link Network} objects are only views onto this grid, made when asked for.
+ * <p>
+ * The map is cut into square chunks of CHUNK_SIZE tiles a side. Chunks without any network
+ * all share one empty chunk that is never written, and only get bytes of their own once
+ * something is built on them, so a big map of mostly grass costs little more than its roads.
+ * A chunk that is cleared again goes back to sharing the empty one.
+ * <p>
+ * Every change to the grid is counted, and each chunk keeps the count it was last changed at,
+ * so copies can share the chunks that didn't change and views only redraw the ones that did.
+ */
+public class WorldGrid {
+
+	/**
+	 * Called for each neighbour of a tile, see {@link WorldGrid#forEachNeighbour(int, int, NeighbourVisitor)}.
+	 */
+	public interface NeighbourVisitor {
+		/**
+		 * @param tile Tile id of the neighbour
+		 * @param direction Direction ordinal from the tile to the neighbour
+		 */
+		void visit(int tile, int direction);
+	}
+
+	public static final int CHUNK_SHIFT = 5;
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int CHUNK_TILES = CHUNK_SIZE * CHUNK_SIZE;
+
+	private static final NetworkType[] TYPES = NetworkType.values();
+	private static final int[] OPPOSITE = { 2, 3, 0, 1 };
+	/** Shared by every chunk without networks, never written */
+	private static final byte[] EMPTY = new byte[2 * CHUNK_TILES];
+
+	public final int width;
+	public final int height;
+	private final int size;
+	private final int chunksX;
+
+	/**
+	 * Per chunk, the NetworkType ordinal of each tile (NONE where there is no network) followed by
+	 * its connections as a bit mask indexed by Direction ordinal, both indexed by position in the chunk.
+	 */
+	private final byte[][] chunks;
+	/** Number of tiles with a network in each chunk */
+	private final int[] networks;
+	/** Number of changes made to the grid */
+	private int writes;
+	/** Per chunk, the number of changes made to the grid when it last changed */
+	private final int[] written;
+
+	public WorldGrid(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.size = width * height;
+		this.chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+		int chunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+		this.chunks = new byte[chunksX * chunksY][];
+		for(int i = 0; i < chunks.length; i++) {
+			chunks[i] = EMPTY;
+		}
+		this.networks = new int[chunks.length];
+		this.writes = 0;
+		this.written = new int[chunks.length];
+	}
+
+	/**
+	 * Copies the grid for readers on another thread. Nothing outside the model package can change a grid,
+	 * so the copy stays as it was, and the chunks of copies are never written.
+	 *
+	 * @param previous Earlier copy of this grid to share the chunks that didn't change since with, or null
+	 */
+	public WorldGrid copy(WorldGrid previous) {
+		WorldGrid copy = new WorldGrid(width, height);
+		copy.writes = writes;
+		for(int c = 0; c < chunks.length; c++) {
+			copy.written[c] = written[c];
+			if(chunks[c] == EMPTY) {
+				continue;
+			}
+			if(previous != null && previous.written[c] == written[c]) {
+				copy.chunks[c] = previous.chunks[c];
+			} else {
+				copy.chunks[c] = chunks[c].clone();
+			}
+			copy.networks[c] = networks[c];
+		}
+		return copy;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public boolean hasNetwork(int tile) {
+		return chunks[chunk(tile)][offset(tile)] != 0;
+	}
+
+	/**
+	 * @return Type of the network on the tile, or NONE.
+	 */
+	public NetworkType getType(int tile) {
+		return TYPES[chunks[chunk(tile)][offset(tile)]];
+	}
+
+	public boolean isRoad(int tile) {
+		return chunks[chunk(tile)][offset(tile)] == NetworkType.ROAD.ordinal();
+	}
+
+	/**
+	 * @return Connections of the tile's network as a bit mask indexed by Direction ordinal,
+	 *         0 if it has no network.
+	 */
+	public int getLinks(int tile) {
+		return chunks[chunk(tile)][CHUNK_TILES + offset(tile)];
+	}
+
+	/**
+	 * Neighbouring tile id, or -1 at the edge of the map.
+	 */
+	public int neighbour(int tile, int direction) {
+		switch(direction) {
+		case 0:
+			return tile + width < size ? tile + width : -1;
+		case 1:
+			return tile % width + 1 < width ? tile + 1 : -1;
+		case 2:
+			return tile >= width ? tile - width : -1;
+		default:
+			return tile % width > 0 ? tile - 1 : -1;
+		}
+	}
+
+	/**
+	 * @return Bit mask indexed by Direction ordinal of the neighbouring tiles that have a road,
+	 *         whether this tile is connected to them or not.
+	 */
+	public int getRoadNeighbours(int tile) {
+		int mask = 0;
+		for(int dir = 0; dir < 4; dir++) {
+			int n = neighbour(tile, dir);
+			if(n >= 0 && isRoad(n)) {
+				mask |= 1 << dir;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Puts the tile ids of the neighbours in a connection mask into out, in Direction order.
+	 *
+	 * @param mask Bit mask indexed by Direction ordinal, such as {@link #getLinks(int)}
+	 * @param out Room for at least 4 tile ids
+	 * @return Number of tile ids put in out.
+	 */
+	public int getNeighbours(int tile, int mask, int[] out) {
+		int count = 0;
+		for(int dir = 0; dir < 4; dir++) {
+			if((mask & (1 << dir)) != 0) {
+				out[count++] = neighbour(tile, dir);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Calls the visitor for each neighbour in a connection mask, in Direction order.
+	 *
+	 * @param mask Bit mask indexed by Direction ordinal, such as {@link #getLinks(int)}
+	 */
+	public void forEachNeighbour(int tile, int mask, NeighbourVisitor visitor) {
+		for(int dir = 0; dir < 4; dir++) {
+			if((mask & (1 << dir)) != 0) {
+				visitor.visit(neighbour(tile, dir), dir);
+			}
+		}
+	}
+
+	/**
+	 * Finds tiles with a network without looking through the empty parts of the map.
+	 * Go over all of them with
+	 * <code>for(int tile = grid.firstNetwork(); tile >= 0; tile = grid.nextNetwork(tile))</code>,
+	 * which goes chunk by chunk rather than row by row.
+	 *
+	 * @return Tile id of the first tile with a network, or -1 if there are none.
+	 */
+	public int firstNetwork() {
+		return findNetwork(0, 0);
+	}
+
+	/**
+	 * @param tile Tile id given by {@link #firstNetwork()} or a previous call
+	 * @return Tile id of the next tile with a network, or -1 if there are no more.
+	 */
+	public int nextNetwork(int tile) {
+		return findNetwork(chunk(tile), offset(tile) + 1);
+	}
+
+	private int findNetwork(int c, int offset) {
+		for(; c < chunks.length; c++, offset = 0) {
+			if(networks[c] == 0) {
+				continue;
+			}
+			byte[] chunk = chunks[c];
+			for(; offset < CHUNK_TILES; offset++) {
+				if(chunk[offset] != 0) {
+					int x = (c % chunksX) << CHUNK_SHIFT | (offset & CHUNK_MASK);
+					int y = (c / chunksX) << CHUNK_SHIFT | offset >> CHUNK_SHIFT;
+					return x + y * width;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Number of chunks with bytes of their own.
+	 */
+	public int getAllocatedChunks() {
+		int count = 0;
+		for(byte[] chunk: chunks) {
+			if(chunk != EMPTY) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getChunkCount() {
+		return chunks.length;
+	}
+
+	/**
+	 * @return Number of chunks in a row, chunk c covers the tiles from x = (c % chunksX) * CHUNK_SIZE
+	 *         and y = (c / chunksX) * CHUNK_SIZE.
+	 */
+	public int getChunksX() {
+		return chunksX;
+	}
+
+	/**
+	 * @return Number of changes made to the grid so far. A copy has the number of the grid it was copied from.
+	 */
+	public int getWrites() {
+		return writes;
+	}
+
+	/**
+	 * @param writes Number of changes made to the grid when it was last looked at, see {@link #getWrites()}
+	 * @return true if tiles of the chunk changed since.
+	 */
+	public boolean isChunkWrittenSince(int chunk, int writes) {
+		return written[chunk] > writes;
+	}
+
+	// *** Changes ***
+	// Only the GameModel changes the grid, so it can tell everyone who keeps track of the network.
+
+	/**
+	 * Puts a network on the tile and connects it to every neighbour with the same type of network.
+	 */
+	void place(int tile, NetworkType type) {
+		clear(tile);
+		if(type == NetworkType.NONE) {
+			return;
+		}
+		int c = chunk(tile);
+		if(chunks[c] == EMPTY) {
+			chunks[c] = new byte[2 * CHUNK_TILES];
+		}
+		chunks[c][offset(tile)] = (byte) type.ordinal();
+		written(c);
+		networks[c]++;
+		for(int dir = 0; dir < 4; dir++) {
+			int n = neighbour(tile, dir);
+			if(n >= 0 && getType(n) == type) {
+				connect(tile, dir, n);
+			}
+		}
+	}
+
+	/**
+	 * Takes the network off the tile, disconnecting it from its neighbours.
+	 */
+	void clear(int tile) {
+		int c = chunk(tile);
+		byte[] chunk = chunks[c];
+		int offset = offset(tile);
+		if(chunk[offset] == 0) {
+			return;
+		}
+		for(int dir = 0; dir < 4; dir++) {
+			disconnect(tile, dir);
+		}
+		chunk[offset] = 0;
+		written(c);
+		if(--networks[c] == 0) {
+			// Nothing left to connect to either, so every byte is back to 0
+			chunks[c] = EMPTY;
+		}
+	}
+
+	private void disconnect(int tile, int direction) {
+		if((getLinks(tile) & (1 << direction)) == 0) {
+			return;
+		}
+		int n = neighbour(tile, direction);
+		chunks[chunk(tile)][CHUNK_TILES + offset(tile)] &= ~(1 << direction);
+		chunks[chunk(n)][CHUNK_TILES + offset(n)] &= ~(1 << OPPOSITE[direction]);
+		written(chunk(n));
+	}
+
+	/**
+	 * Both tiles have a network, so neither is in the empty chunk.
+	 */
+	private void connect(int tile, int direction, int n) {
+		chunks[chunk(tile)][CHUNK_TILES + offset(tile)] |= 1 << direction;
+		chunks[chunk(n)][CHUNK_TILES + offset(n)] |= 1 << OPPOSITE[direction];
+		written(chunk(n));
+	}
+
+	private void written(int chunk) {
+		written[chunk] = ++writes;
+	}
+
+	private int chunk(int tile) {
+		return ((tile % width) >> CHUNK_SHIFT) + ((tile / width) >> CHUNK_SHIFT) * chunksX;
+	}
+
+	private int offset(int tile) {
+		return ((tile % width) & CHUNK_MASK) | ((tile / width) & CHUNK_MASK) << CHUNK_SHIFT;
+	}
+}
@@ -0,0 +1,72 @@
+package com.left.addd.model.pathfinding;
+
+import com.left.addd.model.ChunkedIntGrid;
+import com.left.addd.model.Direction;
+
+/**
+ * Distance and direction from every tile towards one goal tile, over the road network.
+ * Road tiles point along a shortest route; tiles next to a road point onto it.
+ * Both are packed into one int per tile in a {@link ChunkedIntGrid}, so a field only takes memory
+ * in the chunks it reaches rather than for the whole map.
+ */
+public class FlowField {
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	private static final int UNSET = -1;
+	/** Low bits of a packed tile hold the direction ordinal plus one, 0 for none */
+	private static final int DIRECTION_BITS = 3;
+	private static final int DIRECTION_MASK = (1 << DIRECTION_BITS) - 1;
+
+	private final ChunkedIntGrid packed;
+	private int goal;
+	/** GameModel network version the field was computed against */
+	private int version;
+
+	FlowField(int width, int height) {
+		this.packed = new ChunkedIntGrid(width, height, UNSET);
+		this.goal = -1;
+		this.version = -1;
+	}
+
+	public int getGoal() {
+		return goal;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return Direction of the next step from tile towards the goal,
+	 *         or null if tile is the goal or can't reach it.
+	 */
+	public Direction getDirection(int tile) {
+		int value = packed.get(tile);
+		int dir = value == UNSET ? 0 : value & DIRECTION_MASK;
+		return dir == 0 ? null : Direction.get(dir - 1);
+	}
+
+	/**
+	 * @return Steps from tile to the goal, or UNREACHABLE.
+	 */
+	public int getDistance(int tile) {
+		int value = packed.get(tile);
+		return value == UNSET ? UNREACHABLE : value >>> DIRECTION_BITS;
+	}
+
+	void reset(int goal, int version) {
+		this.goal = goal;
+		this.version = version;
+		packed.clear();
+	}
+
+	boolean isSet(int tile) {
+		return packed.get(tile) != UNSET;
+	}
+
+	/**
+	 * @param direction Direction ordinal, or -1 for none
+	 */
+	void set(int tile, int distance, int direction) {
+		packed.set(tile, distance << DIRECTION_BITS | (direction + 1));
+	}
+}
@@ -0,0 +1,133 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.left.addd.model.Entity;
+import com.left.addd.model.GameModel;
+import com.left.addd.utils.LRUCache;
+import com.left.addd.utils.LRUCache.CacheEntryRemovedListener;
+
+/**
+ * Shares one {@link FlowField} per destination between every entity heading there,
+ * so each step is an array lookup instead of a search.
+ * Fields are recomputed lazily the first time they're asked for after the road network changed,
+ * and only the most recently used destinations keep a field.
+ */
+public class FlowFieldCache implements CacheEntryRemovedListener<Entity, FlowField> {
+	public static final int DEFAULT_CAPACITY = 8;
+	private static final int[] OPPOSITE = { 2, 3, 0, 1 };
+
+	private final GameModel gameModel;
+	private final int width;
+	private final int height;
+	private final LRUCache<Entity, FlowField> fields;
+	/** Same fields as the LRUCache, to look them up without changing which was used last */
+	private final HashMap<Entity, FlowField> cached;
+	/** Evicted fields, reused for new destinations */
+	private final ArrayList<FlowField> spare;
+	/** Breadth-first search queue, shared by every field, which only grows as far as the roads reached */
+	private final IntArray queue;
+
+	public FlowFieldCache(GameModel gameModel, int capacity) {
+		this.gameModel = gameModel;
+		this.width = gameModel.width;
+		this.height = gameModel.height;
+		this.fields = new LRUCache<Entity, FlowField>(capacity);
+		this.fields.setEntryRemovedListener(this);
+		this.cached = new HashMap<Entity, FlowField>();
+		this.spare = new ArrayList<FlowField>(1);
+		this.queue = new IntArray();
+	}
+
+	/**
+	 * @param destination Entity to head for. Its tile shouldn't change while the field is in use.
+	 * @return Up to date field towards the destination's current tile.
+	 */
+	public FlowField getField(Entity destination) {
+		int goal = destination.getCurrentTileId();
+		int version = gameModel.getNetworkVersion();
+		FlowField field = fields.get(destination);
+		if(field == null) {
+			field = spare.isEmpty() ? new FlowField(width, height) : spare.remove(spare.size() - 1);
+			compute(field, goal, version);
+			fields.put(destination, field);
+			cached.put(destination, field);
+		} else if(field.getVersion() != version || field.getGoal() != goal) {
+			compute(field, goal, version);
+		}
+		return field;
+	}
+
+	/**
+	 * Looks the field up without computing it or making it the most recently used, so it can be read
+	 * from several threads at once as long as nothing asks for a field meanwhile.
+	 *
+	 * @return Up to date field towards the destination's current tile, or null if there is none yet.
+	 */
+	public FlowField peekField(Entity destination) {
+		FlowField field = cached.get(destination);
+		if(field == null || field.getVersion() != gameModel.getNetworkVersion()
+				|| field.getGoal() != destination.getCurrentTileId()) {
+			return null;
+		}
+		return field;
+	}
+
+	@Override
+	public void notifyEntryRemoved(Entity destination, FlowField field) {
+		cached.remove(destination);
+		spare.add(field);
+	}
+
+	/**
+	 * Breadth-first search outwards from the goal over road tiles.
+	 */
+	private void compute(FlowField field, int goal, int version) {
+		field.reset(goal, version);
+		if(!isRoad(goal % width, goal / width)) {
+			return;
+		}
+		field.set(goal, 0, -1);
+		queue.clear();
+		queue.add(goal);
+		for(int head = 0; head < queue.size; head++) {
+			int tile = queue.get(head);
+			int x = tile % width;
+			int y = tile / width;
+			int distance = field.getDistance(tile) + 1;
+			if(y + 1 < height) {
+				visit(field, tile + width, x, y + 1, distance, 0);
+			}
+			if(x + 1 < width) {
+				visit(field, tile + 1, x + 1, y, distance, 1);
+			}
+			if(y > 0) {
+				visit(field, tile - width, x, y - 1, distance, 2);
+			}
+			if(x > 0) {
+				visit(field, tile - 1, x - 1, y, distance, 3);
+			}
+		}
+	}
+
+	/**
+	 * @param direction Direction ordinal from the tile being expanded to this one
+	 */
+	private void visit(FlowField field, int tile, int x, int y, int distance, int direction) {
+		if(field.isSet(tile)) {
+			return;
+		}
+		field.set(tile, distance, OPPOSITE[direction]);
+		// Tiles off the road can step onto it, but nothing passes through them
+		if(isRoad(x, y)) {
+			queue.add(tile);
+		}
+	}
+
+	private boolean isRoad(int x, int y) {
+		return 0 <= x && x < gameModel.width && 0 <= y && y < gameModel.height
+				&& gameModel.getGrid().isRoad(x + y * gameModel.width);
+	}
+}
@@ -0,0 +1,278 @@
+package com.left.addd.model.pathfinding;
+
+import com.badlogic.gdx.utils.IntIntMap;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.Tile;
+import com.left.addd.utils.IntLazyHeap;
+
+/**
+ * D* Lite planner for a single route.
+ * It searches backwards from the goal and keeps its search state between calls, so when the
+ * entity moves along, or roads change near the route, only the part of the search those changes
+ * affect is redone. A new goal starts the search over.
+ *
+ * Planners are handed out by {@link PathFinder#createPlanner()}, which also forwards road changes to them.
+ * Search state is kept in maps, so a planner only costs memory for the tiles it has looked at.
+ * It works tile by tile, which makes it slower than a search over the RoadGraph from scratch,
+ * see {@link PathFinder#setIncremental(boolean)}.
+ */
+public class IncrementalPlanner {
+	private static final int NONE = -1;
+	private static final int INFINITY = 1 << 29;
+
+	private final GameModel gameModel;
+	private final int width;
+	private final int height;
+
+	/** Distance to the goal, for tiles that have one */
+	private final IntIntMap g;
+	/** One step lookahead distance to the goal, for tiles that have one */
+	private final IntIntMap rhs;
+	private final IntLazyHeap open;
+
+	private boolean initialized;
+	private int start;
+	private int goal;
+	/** Start when km was last brought up to date */
+	private int last;
+	/** Key modifier that saves reordering the open list when the start moves */
+	private int km;
+	private int expanded;
+
+	IncrementalPlanner(GameModel gameModel) {
+		this.gameModel = gameModel;
+		this.width = gameModel.width;
+		this.height = gameModel.height;
+		this.g = new IntIntMap();
+		this.rhs = new IntIntMap();
+		this.open = new IntLazyHeap(64);
+		this.initialized = false;
+	}
+
+	/**
+	 * @return Number of tiles expanded by the last call to findPath.
+	 */
+	public int getExpandedCount() {
+		return expanded;
+	}
+
+	/**
+	 * Finds a shortest path from start to goal, reusing as much of the previous search as possible.
+	 *
+	 * @param start Tile id to search from
+	 * @param goal Tile id to search to
+	 * @param out Receives the route, stamped with the current network version.
+	 * @return true if goal can be reached.
+	 */
+	public boolean findPath(int start, int goal, Path out) {
+		int version = gameModel.getNetworkVersion();
+		expanded = 0;
+		if(start == goal) {
+			out.reset(start, goal, version, 0, true);
+			return true;
+		}
+		if(!gameModel.getPathFinder().canReach(start, goal)) {
+			// The search is kept for when the roads join up again
+			out.reset(start, goal, version, 0, false);
+			return false;
+		}
+		if(!initialized || goal != this.goal) {
+			initialize(start, goal);
+		} else if(start != this.start) {
+			km += heuristic(last, start);
+			last = start;
+			this.start = start;
+			updateVertex(start);
+		}
+		computeShortestPath();
+
+		int length = getG(start);
+		if(length >= INFINITY) {
+			out.reset(start, goal, version, 0, false);
+			return false;
+		}
+		out.reset(start, goal, version, length, true);
+		int tile = start;
+		for(int i = 0; i < length; i++) {
+			int next = NONE;
+			int nextDirection = NONE;
+			int nextCost = INFINITY;
+			for(int dir = 0; dir < 4; dir++) {
+				int n = neighbour(tile, dir);
+				if(n != NONE && isRoad(n)) {
+					int cost = getG(n);
+					if(cost < nextCost) {
+						next = n;
+						nextDirection = dir;
+						nextCost = cost;
+					}
+				}
+			}
+			if(nextCost != length - i - 1) {
+				// Shouldn't happen, but a search from scratch is always right
+				return gameModel.getPathFinder().findPath(start, goal, out);
+			}
+			out.setStep(i, nextDirection);
+			tile = next;
+		}
+		return true;
+	}
+
+	/**
+	 * Call this after the network on a tile was set or cleared.
+	 */
+	public void tileChanged(int tile) {
+		if(!initialized) {
+			return;
+		}
+		// Only the costs of stepping onto the tile changed
+		updateVertex(tile);
+		for(int dir = 0; dir < 4; dir++) {
+			int n = neighbour(tile, dir);
+			if(n != NONE) {
+				updateVertex(n);
+			}
+		}
+	}
+
+	/**
+	 * Forgets the search, freeing most of its memory.
+	 */
+	public void reset() {
+		initialized = false;
+		g.clear(64);
+		rhs.clear(64);
+		open.clear();
+	}
+
+	private void initialize(int start, int goal) {
+		g.clear();
+		rhs.clear();
+		open.clear();
+		this.km = 0;
+		this.start = start;
+		this.last = start;
+		this.goal = goal;
+		this.initialized = true;
+		rhs.put(goal, 0);
+		open.add(goal, key(goal, INFINITY, 0));
+	}
+
+	private void computeShortestPath() {
+		while(!open.isEmpty()) {
+			long top = open.peekPriority();
+			int startG = getG(start);
+			int startRhs = getRhs(start);
+			if(top >= key(start, startG, startRhs) && startG == startRhs) {
+				break;
+			}
+			int tile = open.pop();
+			int tileG = getG(tile);
+			int tileRhs = getRhs(tile);
+			if(tileG == tileRhs) {
+				// Outdated entry
+				continue;
+			}
+			long current = key(tile, tileG, tileRhs);
+			if(top < current) {
+				open.add(tile, current);
+				continue;
+			} else if(top > current) {
+				// Outdated entry, a newer one has been queued
+				continue;
+			}
+			expanded++;
+			if(tileG > tileRhs) {
+				setG(tile, tileRhs);
+			} else {
+				setG(tile, INFINITY);
+				updateVertex(tile);
+			}
+			for(int dir = 0; dir < 4; dir++) {
+				int n = neighbour(tile, dir);
+				if(n != NONE) {
+					updateVertex(n);
+				}
+			}
+		}
+	}
+
+	private void updateVertex(int tile) {
+		if(tile != goal) {
+			if(tile != start && !isRoad(tile)) {
+				// Nothing passes through tiles off the road
+				return;
+			}
+			int best = INFINITY;
+			for(int dir = 0; dir < 4; dir++) {
+				int n = neighbour(tile, dir);
+				if(n != NONE && isRoad(n)) {
+					best = Math.min(best, getG(n) + 1);
+				}
+			}
+			setRhs(tile, best);
+		}
+		int tileG = getG(tile);
+		int tileRhs = getRhs(tile);
+		if(tileG != tileRhs) {
+			open.add(tile, key(tile, tileG, tileRhs));
+		}
+	}
+
+	private long key(int tile, int tileG, int tileRhs) {
+		int min = Math.min(tileG, tileRhs);
+		return ((long) (min + heuristic(start, tile) + km) << 32) | min;
+	}
+
+	private int getG(int tile) {
+		return g.get(tile, INFINITY);
+	}
+
+	private void setG(int tile, int value) {
+		if(value >= INFINITY) {
+			g.remove(tile, INFINITY);
+		} else {
+			g.put(tile, value);
+		}
+	}
+
+	private int getRhs(int tile) {
+		return rhs.get(tile, INFINITY);
+	}
+
+	private void setRhs(int tile, int value) {
+		if(value >= INFINITY) {
+			rhs.remove(tile, INFINITY);
+		} else {
+			rhs.put(tile, value);
+		}
+	}
+
+	private boolean isRoad(int tile) {
+		return gameModel.getGrid().isRoad(tile);
+	}
+
+	/**
+	 * Neighbouring tile id, or NONE at the edge of the map.
+	 */
+	private int neighbour(int tile, int direction) {
+		int x = tile % width;
+		int y = tile / width;
+		switch(direction) {
+		case 0:
+			return y + 1 < height ? tile + width : NONE;
+		case 1:
+			return x + 1 < width ? tile + 1 : NONE;
+		case 2:
+			return y > 0 ? tile - width : NONE;
+		default:
+			return x > 0 ? tile - 1 : NONE;
+		}
+	}
+
+	private int heuristic(int from, int to) {
+		int dx = from % width - to % width;
+		int dy = from / width - to / width;
+		return (dx < 0 ? -dx : dx) + (dy < 0 ? -dy : dy);
+	}
+}
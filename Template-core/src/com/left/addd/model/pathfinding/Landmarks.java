@@ -0,0 +1,234 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.Arrays;
+
+import com.left.addd.model.NetworkComponents;
+import com.left.addd.utils.IntMinHeap;
+
+/**
+ * Distances from a handful of landmark nodes to every node of a {@link RoadGraph},
+ * which give searches a much tighter estimate than counting tiles on winding roads.
+ * By the triangle inequality, the way from a node to the goal is at least as long as
+ * the difference of their distances to any landmark.
+ *
+ * Landmarks are picked far apart on the biggest piece of road: the first one is the node
+ * furthest from some node there, and each next one is the node furthest from the ones before.
+ * Routes on other pieces of road just count tiles.
+ * The tables are worked out a share at a time on every {@link #update()} and only used
+ * once they're done, so after a road change searches fall back to counting tiles for a few frames.
+ */
+public class Landmarks {
+	static final int UNREACHED = -1;
+	/** Nodes settled per update when no limit is given */
+	public static final int DEFAULT_NODES_PER_UPDATE = 20000;
+
+	private final RoadGraph graph;
+	private int count;
+	private int nodesPerUpdate;
+
+	/** Finished tables searches may use, read from other threads */
+	private volatile Tables tables;
+
+	// Tables being worked out
+	private Tables building;
+	/** Landmark whose distances are being worked out */
+	private int landmark;
+	/** Whether the distances being worked out are only to find the first landmark */
+	private boolean seeding;
+	/** Distance to the closest landmark so far, UNREACHED if none reaches the node */
+	private int[] closest;
+	private IntMinHeap open;
+	private boolean[] settled;
+
+	public Landmarks(RoadGraph graph) {
+		this.graph = graph;
+		this.count = 0;
+		this.nodesPerUpdate = DEFAULT_NODES_PER_UPDATE;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param count Number of landmarks, 0 to turn them off. 8 to 16 is plenty for most maps,
+	 *        every landmark costs an int per node and a little more work per expanded node.
+	 */
+	public void setCount(int count) {
+		if(count != this.count) {
+			this.count = count;
+			this.tables = null;
+			this.building = null;
+		}
+	}
+
+	/**
+	 * @param nodes Nodes settled per {@link #update()}, or 0 to finish the tables in one go.
+	 */
+	public void setNodesPerUpdate(int nodes) {
+		this.nodesPerUpdate = nodes;
+	}
+
+	/**
+	 * @return true if the tables match the roads as they are.
+	 */
+	public boolean isReady() {
+		Tables current = tables;
+		return current != null && current.version == graph.getNetworkVersion();
+	}
+
+	/**
+	 * Works on the tables if the roads changed since they were made. Call this every frame,
+	 * from the thread that changes the roads.
+	 */
+	public void update() {
+		if(count == 0 || isReady()) {
+			return;
+		}
+		graph.ensureBuilt();
+		if(building == null || building.version != graph.getNetworkVersion()) {
+			begin();
+		}
+		int budget = nodesPerUpdate > 0 ? nodesPerUpdate : Integer.MAX_VALUE;
+		while(budget > 0 && building != null) {
+			budget -= settle(budget);
+		}
+	}
+
+	/**
+	 * @return The finished tables, or null. They may be for an older network version.
+	 */
+	Tables getTables() {
+		return tables;
+	}
+
+	private void begin() {
+		int capacity = graph.getCapacity();
+		building = new Tables(graph.getNetworkVersion(), count, capacity);
+		Arrays.fill(building.distance, UNREACHED);
+		landmark = 0;
+		if(closest == null || closest.length < capacity) {
+			closest = new int[capacity];
+			settled = new boolean[capacity];
+			open = new IntMinHeap(capacity);
+		}
+		Arrays.fill(closest, 0, capacity, UNREACHED);
+		seeding = true;
+		startLandmark(firstNode(capacity));
+	}
+
+	/**
+	 * Settles up to max nodes of the current landmark's distances, moving on to the next landmark
+	 * or publishing the tables when it's done.
+	 *
+	 * @return Number of nodes settled, at least 1 so callers always make progress.
+	 */
+	private int settle(int max) {
+		int[] edgeTarget = graph.edgeTarget;
+		int[] edgeLength = graph.edgeLength;
+		int[] distance = building.distance;
+		int stride = building.count;
+		int done = 0;
+		while(!open.isEmpty() && done < max) {
+			int d = (int) open.peekPriority();
+			int node = open.pop();
+			settled[node] = true;
+			distance[node * stride + landmark] = d;
+			if(closest[node] == UNREACHED || d < closest[node]) {
+				closest[node] = d;
+			}
+			done++;
+			int base = node * 4;
+			for(int dir = 0; dir < 4; dir++) {
+				int target = edgeTarget[base + dir];
+				if(target != RoadGraph.NONE && !settled[target]) {
+					open.add(target, d + edgeLength[base + dir]);
+				}
+			}
+		}
+		if(open.isEmpty()) {
+			nextLandmark();
+		}
+		return Math.max(1, done);
+	}
+
+	private void nextLandmark() {
+		if(seeding) {
+			// Start over from the node furthest from where we began
+			seeding = false;
+			int first = furthestNode();
+			Arrays.fill(closest, 0, building.capacity, UNREACHED);
+			startLandmark(first);
+			return;
+		}
+		landmark++;
+		if(landmark == building.count) {
+			tables = building;
+			building = null;
+			return;
+		}
+		startLandmark(furthestNode());
+	}
+
+	/**
+	 * @return The node furthest from every landmark so far, among the nodes they reach.
+	 */
+	private int furthestNode() {
+		int best = RoadGraph.NONE;
+		int bestDistance = -1;
+		for(int node = 0; node < building.capacity; node++) {
+			if(closest[node] > bestDistance) {
+				best = node;
+				bestDistance = closest[node];
+			}
+		}
+		return best;
+	}
+
+	private void startLandmark(int node) {
+		open.clear();
+		Arrays.fill(settled, false);
+		if(node != RoadGraph.NONE) {
+			open.add(node, 0);
+		}
+	}
+
+	/**
+	 * @return A node on the biggest piece of road, or NONE if there are no roads.
+	 */
+	private int firstNode(int capacity) {
+		NetworkComponents components = graph.getComponents();
+		int best = RoadGraph.NONE;
+		int bestSize = 0;
+		for(int node = 0; node < capacity; node++) {
+			int tile = graph.nodeTile[node];
+			if(tile == RoadGraph.NONE) {
+				continue;
+			}
+			int size = components.getComponentSize(components.getComponent(tile));
+			if(size > bestSize) {
+				best = node;
+				bestSize = size;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Distances for one network version, never changed once published.
+	 */
+	static class Tables {
+		final int version;
+		final int count;
+		final int capacity;
+		/** Distance in tiles from each landmark, indexed by node * count + landmark, or UNREACHED */
+		final int[] distance;
+
+		Tables(int version, int count, int capacity) {
+			this.version = version;
+			this.count = count;
+			this.capacity = capacity;
+			this.distance = new int[count * capacity];
+		}
+	}
+}
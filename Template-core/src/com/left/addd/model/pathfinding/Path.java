@@ -0,0 +1,169 @@
+package com.left.addd.model.pathfinding;
+
+import com.left.addd.model.Direction;
+
+/**
+ * A route between two tiles, stored as a run of directions packed 2 bits each
+ * (16 steps per int), and walked with a cursor.
+ * A Path also remembers what it was planned against (goal tile and network version),
+ * so its owner can tell when it has gone stale.
+ */
+public class Path {
+	private static final int STEPS_PER_WORD = 16;
+
+	private int[] words;
+	private int length;
+	private int cursor;
+
+	/** Tile id the route starts on */
+	private int start;
+	/** Tile id the route ends on */
+	private int goal;
+	/** Tile id the cursor is on */
+	private int position;
+	/** GameModel network version the route was planned against */
+	private int version;
+	private boolean reachable;
+	private boolean planned;
+
+	public Path() {
+		this.words = new int[4];
+		clear();
+	}
+
+	/**
+	 * Forgets the route. A cleared path is never valid.
+	 */
+	public void clear() {
+		length = 0;
+		cursor = 0;
+		start = -1;
+		goal = -1;
+		position = -1;
+		version = 0;
+		reachable = false;
+		planned = false;
+	}
+
+	/**
+	 * Starts a new route. Steps are then filled in with {@link #setStep(int, int)}.
+	 *
+	 * @param start Tile id the route starts on
+	 * @param goal Tile id the route ends on
+	 * @param version GameModel network version the route is planned against
+	 * @param length Number of steps, 0 if start == goal or goal is unreachable
+	 * @param reachable Whether the goal can be reached at all
+	 */
+	public void reset(int start, int goal, int version, int length, boolean reachable) {
+		int needed = (length + STEPS_PER_WORD - 1) / STEPS_PER_WORD;
+		if(needed > words.length) {
+			int capacity = words.length;
+			while(capacity < needed) {
+				capacity *= 2;
+			}
+			words = new int[capacity];
+		}
+		this.length = length;
+		this.cursor = 0;
+		this.start = start;
+		this.goal = goal;
+		this.position = start;
+		this.version = version;
+		this.reachable = reachable;
+		this.planned = true;
+	}
+
+	/**
+	 * Copies another route, cursor included.
+	 */
+	public void set(Path other) {
+		reset(other.start, other.goal, other.version, other.length, other.reachable);
+		System.arraycopy(other.words, 0, words, 0, (length + STEPS_PER_WORD - 1) / STEPS_PER_WORD);
+		this.cursor = other.cursor;
+		this.position = other.position;
+		this.planned = other.planned;
+	}
+
+	/**
+	 * @param index Step number, in [0, length)
+	 * @param direction Direction ordinal of that step
+	 */
+	public void setStep(int index, int direction) {
+		int word = index / STEPS_PER_WORD;
+		int shift = (index % STEPS_PER_WORD) * 2;
+		words[word] = (words[word] & ~(3 << shift)) | (direction << shift);
+	}
+
+	public int getStep(int index) {
+		return (words[index / STEPS_PER_WORD] >>> ((index % STEPS_PER_WORD) * 2)) & 3;
+	}
+
+	/**
+	 * @return Rough number of bytes the path takes up, for caches that limit their memory.
+	 */
+	public int getMemoryWeight() {
+		// Object and array headers plus the fields
+		return 64 + words.length * 4;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getGoal() {
+		return goal;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public boolean isReachable() {
+		return reachable;
+	}
+
+	/**
+	 * A route is still usable if it was planned against the current network,
+	 * still leads to the same goal, and its cursor is where its owner is standing.
+	 */
+	public boolean isValid(int position, int goal, int version) {
+		return planned && this.version == version && this.goal == goal && this.position == position;
+	}
+
+	public boolean hasNext() {
+		return cursor < length;
+	}
+
+	/**
+	 * Advances the cursor by one step.
+	 *
+	 * @param width Width of the GameModel, used to track the cursor's tile id.
+	 * @return the direction of the step taken.
+	 */
+	public Direction next(int width) {
+		int step = getStep(cursor++);
+		switch(step) {
+		case 0:
+			position += width;
+			break;
+		case 1:
+			position += 1;
+			break;
+		case 2:
+			position -= width;
+			break;
+		default:
+			position -= 1;
+			break;
+		}
+		return Direction.get(step);
+	}
+}
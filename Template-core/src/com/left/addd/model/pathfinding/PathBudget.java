@@ -0,0 +1,108 @@
+package com.left.addd.model.pathfinding;
+
+/**
+ * How much searching a {@link SynchronousPathSolver} may do in one frame, and how much it did.
+ * Limits can be set in expanded nodes, in microseconds, or both. A limit of 0 means no limit.
+ * The usage figures are there to tune the limits for each platform.
+ */
+public class PathBudget {
+	private int nodesPerFrame;
+	private int microsPerFrame;
+
+	// Usage of the last frame that searched
+	private int frameNodes;
+	private long frameNanos;
+
+	// Usage since the last call to resetUsage()
+	private int frames;
+	private long totalNodes;
+	private long totalNanos;
+	private int peakNodes;
+	private long peakNanos;
+	/** Frames that went over the time limit, which can only be checked between nodes */
+	private int overruns;
+
+	public PathBudget() {
+		this(0, 0);
+	}
+
+	public PathBudget(int nodesPerFrame, int microsPerFrame) {
+		set(nodesPerFrame, microsPerFrame);
+	}
+
+	public void set(int nodesPerFrame, int microsPerFrame) {
+		this.nodesPerFrame = nodesPerFrame;
+		this.microsPerFrame = microsPerFrame;
+	}
+
+	public int getNodesPerFrame() {
+		return nodesPerFrame;
+	}
+
+	public int getMicrosPerFrame() {
+		return microsPerFrame;
+	}
+
+	public boolean isUnlimited() {
+		return nodesPerFrame <= 0 && microsPerFrame <= 0;
+	}
+
+	public int getFrameNodes() {
+		return frameNodes;
+	}
+
+	public long getFrameMicros() {
+		return frameNanos / 1000;
+	}
+
+	public int getPeakNodes() {
+		return peakNodes;
+	}
+
+	public long getPeakMicros() {
+		return peakNanos / 1000;
+	}
+
+	/**
+	 * @return Number of frames that searched since the last reset.
+	 */
+	public int getFrames() {
+		return frames;
+	}
+
+	public int getOverruns() {
+		return overruns;
+	}
+
+	public void resetUsage() {
+		frames = 0;
+		totalNodes = 0;
+		totalNanos = 0;
+		peakNodes = 0;
+		peakNanos = 0;
+		overruns = 0;
+	}
+
+	void record(int nodes, long nanos) {
+		frameNodes = nodes;
+		frameNanos = nanos;
+		frames++;
+		totalNodes += nodes;
+		totalNanos += nanos;
+		peakNodes = Math.max(peakNodes, nodes);
+		peakNanos = Math.max(peakNanos, nanos);
+		if(microsPerFrame > 0 && nanos > microsPerFrame * 1000L) {
+			overruns++;
+		}
+	}
+
+	@Override
+	public String toString() {
+		if(frames == 0) {
+			return "idle";
+		}
+		return frames + " frames, avg " + (totalNodes / frames) + " nodes " + (totalNanos / frames / 1000) + " us"
+				+ ", peak " + peakNodes + " nodes " + (peakNanos / 1000) + " us"
+				+ ", " + overruns + " overruns (limit " + nodesPerFrame + " nodes " + microsPerFrame + " us)";
+	}
+}
@@ -0,0 +1,182 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.ArrayList;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.left.addd.model.Entity;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.Tile;
+
+/**
+ * Plans routes for the entities of a GameModel.
+ * Routes are searched over the contracted {@link RoadGraph}, which is kept in step with the roads
+ * through {@link #tileChanged(Tile)}.
+ * Entities ask for those routes through the {@link PathRequestQueue}, which solves them between ticks
+ * and keeps the latest in a {@link RouteCache} shared by every entity.
+ * Destinations that many entities share, like Buildings, get a {@link FlowField} instead.
+ * In incremental mode, routes to other destinations each keep an {@link IncrementalPlanner}
+ * that repairs its search after road changes instead of starting over. That mode is off
+ * and nothing in the game turns it on, see {@link #setIncremental(boolean)}.
+ */
+public class PathFinder {
+	private final GameModel gameModel;
+	private final RoadGraph roadGraph;
+	private final FlowFieldCache flowFields;
+	private final RouteCache routes;
+	private final PathRequestQueue requests;
+	private final ArrayList<IncrementalPlanner> planners;
+	private boolean incremental;
+
+	public PathFinder(GameModel gameModel) {
+		this.gameModel = gameModel;
+		this.roadGraph = new RoadGraph(gameModel);
+		this.flowFields = new FlowFieldCache(gameModel, FlowFieldCache.DEFAULT_CAPACITY);
+		this.routes = new RouteCache(gameModel, RouteCache.DEFAULT_WEIGHT);
+		this.requests = new PathRequestQueue(roadGraph, routes, new SynchronousPathSolver(roadGraph, new PathBudget()));
+		this.planners = new ArrayList<IncrementalPlanner>();
+		this.incremental = false;
+	}
+
+	public RoadGraph getRoadGraph() {
+		return roadGraph;
+	}
+
+	public PathRequestQueue getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return Routes solved for the queue recently, with hit and miss counts to size it by.
+	 */
+	public RouteCache getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * Lets the solver and the landmark tables do their share of work. Call this every frame.
+	 */
+	public void update() {
+		requests.update();
+		roadGraph.getLandmarks().update();
+	}
+
+	/**
+	 * @param count Number of landmarks searches use to estimate distances, 0 to not use any.
+	 *        Landmarks make long routes on winding roads much cheaper, see {@link Landmarks}.
+	 */
+	public void setLandmarkCount(int count) {
+		roadGraph.getLandmarks().setCount(count);
+	}
+
+	/**
+	 * Switches to a solver made by the given factory, for example one that runs on worker threads.
+	 */
+	public void setSolver(PathSolver.Factory factory) {
+		requests.setSolver(factory.create(roadGraph));
+	}
+
+	/**
+	 * Finds a shortest path from start to goal right away.
+	 *
+	 * @param start Tile id to search from
+	 * @param goal Tile id to search to
+	 * @param out Receives the route
+	 * @return true if goal can be reached.
+	 */
+	public boolean findPath(int start, int goal, Path out) {
+		return roadGraph.findPath(start, goal, out);
+	}
+
+	/**
+	 * Finds a shortest path from start to whichever of the goals is closest right away,
+	 * in one search rather than one per goal.
+	 *
+	 * @param start Tile id to search from
+	 * @param goals Tile ids to search to
+	 * @param out Receives the route to the goal reached
+	 * @return Index into goals of the goal reached, or -1 if none can be reached.
+	 */
+	public int findNearest(int start, IntArray goals, Path out) {
+		return roadGraph.findNearest(start, goals, out);
+	}
+
+	/**
+	 * Tells in constant time whether a route exists, without searching for it.
+	 * Like the searches, a start tile off the road may step onto a road next to it.
+	 *
+	 * @param start Tile id to search from
+	 * @param goal Tile id to search to
+	 */
+	public boolean canReach(int start, int goal) {
+		return roadGraph.canReach(start, goal);
+	}
+
+	/**
+	 * @param destination Entity to head for, which shouldn't move around.
+	 * @return Field shared by every entity heading to destination.
+	 */
+	public FlowField getFlowField(Entity destination) {
+		return flowFields.getField(destination);
+	}
+
+	/**
+	 * Reads the field without computing it, see {@link FlowFieldCache#peekField(Entity)}.
+	 *
+	 * @return Field shared by every entity heading to destination, or null if it isn't up to date.
+	 */
+	public FlowField peekFlowField(Entity destination) {
+		return flowFields.peekField(destination);
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Opt-in, and slower than the queue: an IncrementalPlanner repairs a search over every tile,
+	 * while the queue searches the contracted RoadGraph from scratch. With 200 routes on a 1024x1024 map
+	 * replanned after every edit, the PathfindingBenchmark takes 187 ms incremental against 136 ms
+	 * from scratch to paint a road, and 330 ms against 193 ms to dig one up. Incremental routes are
+	 * also planned on the spot when an entity needs one, outside the queue and its frame budget.
+	 *
+	 * @param incremental Whether entities should keep an IncrementalPlanner for their routes.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * @return A planner that gets told about every road change until it is released.
+	 */
+	public IncrementalPlanner createPlanner() {
+		IncrementalPlanner planner = new IncrementalPlanner(gameModel);
+		planners.add(planner);
+		return planner;
+	}
+
+	public void releasePlanner(IncrementalPlanner planner) {
+		planners.remove(planner);
+	}
+
+	/**
+	 * Call this before the network on a tile is set or cleared.
+	 */
+	public void tileChanging(Tile tile) {
+		requests.waitForSolver();
+	}
+
+	/**
+	 * Call this after the network on a tile was set or cleared.
+	 */
+	public void tileChanged(Tile tile) {
+		roadGraph.tileChanged(tile);
+		int id = tile.getId();
+		for(int i = 0; i < planners.size(); i++) {
+			planners.get(i).tileChanged(id);
+		}
+	}
+
+	public void dispose() {
+		requests.dispose();
+	}
+}
@@ -0,0 +1,134 @@
+package com.left.addd.model.pathfinding;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A route asked for through a {@link PathRequestQueue}.
+ * Requests are solved between ticks and their results only show up at the start of a tick,
+ * so an entity keeps a single request and submits it again whenever it needs a new route.
+ * A request can have several goals, and then leads to whichever of them is closest.
+ */
+public class PathRequest {
+	private Path path;
+	private int start;
+	private final IntArray goals;
+	/** Index into goals of the goal reached, or -1 */
+	private int found;
+	private boolean pending;
+	private boolean done;
+	/** Request with the same start and goal whose result this one waits to share, or null */
+	PathRequest leader;
+
+	public PathRequest() {
+		this.path = new Path();
+		this.start = -1;
+		this.goals = new IntArray(1);
+		this.found = -1;
+		this.pending = false;
+		this.done = false;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * @return The first goal asked for, which is the only one for requests made with a single goal.
+	 */
+	public int getGoal() {
+		return goals.size > 0 ? goals.get(0) : -1;
+	}
+
+	/**
+	 * @return Every goal asked for. Don't change it.
+	 */
+	public IntArray getGoals() {
+		return goals;
+	}
+
+	/**
+	 * @return Index into {@link #getGoals()} of the goal the route leads to once the request is done,
+	 *         or -1 if none can be reached.
+	 */
+	public int getFound() {
+		return found;
+	}
+
+	/**
+	 * @return true if the request was made with exactly these goals, in this order.
+	 */
+	public boolean isFor(int start, IntArray goals) {
+		return this.start == start && this.goals.equals(goals);
+	}
+
+	/**
+	 * @return true from submitting until the result is in.
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * @return true if the result is in and hasn't been cleared.
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * @return The route found, once the request is done.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Forgets the result.
+	 */
+	public void clear() {
+		done = false;
+	}
+
+	/**
+	 * Hands the route found over instead of copying it, and forgets the result.
+	 * The request starts on a new small path, so a long route isn't kept twice.
+	 */
+	public Path takePath() {
+		Path taken = path;
+		path = new Path();
+		done = false;
+		return taken;
+	}
+
+	/**
+	 * Runs the search for this request. Called by {@link PathSolver}s, possibly on another thread.
+	 */
+	public void solve(RoadSearch search) {
+		solved(search.findNearest(start, goals, path));
+	}
+
+	void submit(int start, int goal) {
+		this.goals.clear();
+		this.goals.add(goal);
+		submitted(start);
+	}
+
+	void submit(int start, IntArray goals) {
+		this.goals.clear();
+		this.goals.addAll(goals);
+		submitted(start);
+	}
+
+	private void submitted(int start) {
+		this.start = start;
+		this.found = -1;
+		this.pending = true;
+		this.done = false;
+	}
+
+	void solved(int found) {
+		this.found = found;
+		pending = false;
+		done = true;
+	}
+}
@@ -0,0 +1,182 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Collects the path requests made during a tick and hands them to a {@link PathSolver} as one batch.
+ * The batch is solved between ticks and its results are only looked at from the start of the next tick,
+ * which keeps the simulation the same no matter how fast the solver is.
+ *
+ * Requests with a single goal are looked up in a {@link RouteCache} first, and only the first of
+ * several requests for the same route is searched for, the others share its result.
+ */
+public class PathRequestQueue {
+	private final RoadGraph graph;
+	private final RouteCache routes;
+	private PathSolver solver;
+	/** Requests made during this tick */
+	private final ArrayList<PathRequest> queued;
+	/** Requests handed to the solver, and the ones it didn't get to yet */
+	private final ArrayList<PathRequest> batch;
+	/** Request being solved for each route, by packed start and goal */
+	private final HashMap<Long, PathRequest> leaders;
+	/** Requests waiting for a leader's result */
+	private final ArrayList<PathRequest> followers;
+	private boolean running;
+	private long shared;
+
+	public PathRequestQueue(RoadGraph graph, RouteCache routes, PathSolver solver) {
+		this.graph = graph;
+		this.routes = routes;
+		this.solver = solver;
+		this.queued = new ArrayList<PathRequest>();
+		this.batch = new ArrayList<PathRequest>();
+		this.leaders = new HashMap<Long, PathRequest>();
+		this.followers = new ArrayList<PathRequest>();
+		this.running = false;
+	}
+
+	/**
+	 * Replaces the solver. Requests the old one didn't get to go to the new one.
+	 */
+	public void setSolver(PathSolver solver) {
+		this.solver.roadsChanging();
+		this.solver.dispose();
+		this.solver = solver;
+		if(running) {
+			solver.start(batch);
+		}
+	}
+
+	/**
+	 * @return Number of requests that haven't been solved yet.
+	 */
+	public int getPendingCount() {
+		return queued.size() + batch.size() + followers.size();
+	}
+
+	/**
+	 * @return Requests that shared the search of another request for the same route.
+	 */
+	public long getSharedCount() {
+		return shared;
+	}
+
+	/**
+	 * Asks for a route. The result can be read from the request from the start of the next tick,
+	 * or later if the solver falls behind.
+	 *
+	 * @param request A request that isn't pending already.
+	 * @param start Tile id to search from
+	 * @param goal Tile id to search to
+	 */
+	public void submit(PathRequest request, int start, int goal) {
+		request.submit(start, goal);
+		queued.add(request);
+	}
+
+	/**
+	 * Asks for a route to whichever of several goals is closest, found in a single search.
+	 *
+	 * @param request A request that isn't pending already.
+	 * @param start Tile id to search from
+	 * @param goals Tile ids to search to, copied into the request
+	 */
+	public void submit(PathRequest request, int start, IntArray goals) {
+		request.submit(start, goals);
+		queued.add(request);
+	}
+
+	/**
+	 * Lets the solver work on the running batch. Call this every frame.
+	 */
+	public void update() {
+		solver.update();
+	}
+
+	/**
+	 * Waits for the running batch, so its results can be read. Call this before updating any entity.
+	 */
+	public void beginTick() {
+		if(running) {
+			solver.finish();
+			running = false;
+		}
+		// Keep whatever wasn't solved, in order
+		int kept = 0;
+		for(int i = 0; i < batch.size(); i++) {
+			PathRequest request = batch.get(i);
+			if(request.isPending()) {
+				batch.set(kept++, request);
+			} else if(request.getGoals().size == 1) {
+				routes.put(request.getPath());
+				leaders.remove(RouteCache.key(request.getStart(), request.getGoal()));
+			}
+		}
+		while(batch.size() > kept) {
+			batch.remove(batch.size() - 1);
+		}
+		kept = 0;
+		for(int i = 0; i < followers.size(); i++) {
+			PathRequest request = followers.get(i);
+			PathRequest leader = request.leader;
+			if(leader.isPending()) {
+				followers.set(kept++, request);
+			} else {
+				request.getPath().set(leader.getPath());
+				request.leader = null;
+				request.solved(leader.getFound());
+			}
+		}
+		while(followers.size() > kept) {
+			followers.remove(followers.size() - 1);
+		}
+	}
+
+	/**
+	 * Hands the requests of this tick to the solver. Call this after updating every entity.
+	 */
+	public void endTick() {
+		for(int i = 0; i < queued.size(); i++) {
+			PathRequest request = queued.get(i);
+			if(request.getGoals().size == 1) {
+				if(routes.get(request.getStart(), request.getGoal(), request.getPath())) {
+					request.solved(0);
+					continue;
+				}
+				Long key = RouteCache.key(request.getStart(), request.getGoal());
+				PathRequest leader = leaders.get(key);
+				if(leader != null) {
+					request.leader = leader;
+					followers.add(request);
+					shared++;
+					continue;
+				}
+				leaders.put(key, request);
+			}
+			batch.add(request);
+		}
+		queued.clear();
+		if(batch.isEmpty()) {
+			return;
+		}
+		graph.ensureBuilt();
+		solver.start(batch);
+		running = true;
+	}
+
+	/**
+	 * Waits until the solver stops reading the roads. Call this before a road is changed.
+	 */
+	public void waitForSolver() {
+		solver.roadsChanging();
+	}
+
+	public void dispose() {
+		solver.roadsChanging();
+		solver.dispose();
+	}
+}
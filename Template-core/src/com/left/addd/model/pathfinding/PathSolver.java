@@ -0,0 +1,46 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.List;
+
+/**
+ * Solves the batches of {@link PathRequest}s handed over by a {@link PathRequestQueue}.
+ * A batch is started at the end of a tick and finished at the start of the next one,
+ * so a solver is free to work on it while frames are drawn.
+ */
+public interface PathSolver {
+	/**
+	 * Starts solving a batch. The batch won't change until {@link #finish()} returned.
+	 */
+	void start(List<PathRequest> batch);
+
+	/**
+	 * Called every frame, so solvers without threads can do a share of the work.
+	 */
+	void update();
+
+	/**
+	 * Waits until the batch is solved as far as this solver goes in one tick.
+	 * Requests still pending afterwards are handed over again with the next batch.
+	 */
+	void finish();
+
+	/**
+	 * Called before a road is changed. Nothing may read the roads until this returned.
+	 * A solver that finishes every batch by the next tick has to finish the running one here,
+	 * on the roads it was started on, so that routes don't depend on when the edit came in.
+	 * Requests left pending are handed over again with the next batch.
+	 */
+	void roadsChanging();
+
+	/**
+	 * Stops any threads the solver started.
+	 */
+	void dispose();
+
+	/**
+	 * Makes a solver for each GameModel, which lets every platform pick its own.
+	 */
+	public interface Factory {
+		PathSolver create(RoadGraph graph);
+	}
+}
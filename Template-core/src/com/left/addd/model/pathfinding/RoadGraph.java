@@ -0,0 +1,419 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.left.addd.model.ChunkedIntGrid;
+import com.left.addd.model.Direction;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.NetworkComponents;
+import com.left.addd.model.Tile;
+import com.left.addd.model.WorldGrid;
+
+/**
+ * The road network contracted to its junctions.
+ * Road tiles that don't have exactly two connections (junctions and dead ends) are nodes,
+ * and the corridors of two-connection tiles between them are edges weighted by their length.
+ * A ring of corridor tiles without any junction gets one of its tiles picked as a node.
+ *
+ * Searches run over the nodes, see {@link RoadSearch}, and are expanded back into tile steps afterwards.
+ * When a road is added or removed, only the nodes whose corridors pass near it are relinked.
+ */
+public class RoadGraph {
+	static final int NONE = -1;
+	static final int[] OPPOSITE = { 2, 3, 0, 1 };
+
+	private final GameModel gameModel;
+	private final int width;
+	private final int height;
+	private boolean built;
+
+	/** Node of each tile, or NONE */
+	final ChunkedIntGrid nodeOfTile;
+
+	// Nodes, indexed by node number
+	int[] nodeTile;
+	/** Node at the far end of each corridor, indexed by node * 4 + direction ordinal */
+	int[] edgeTarget;
+	int[] edgeLength;
+	/** Node numbers handed out so far, freed ones included */
+	private int nodeCount;
+	private final IntArray freeNodes;
+	private final IntArray dirtyNodes;
+
+	/** Result of walks made while maintaining the graph */
+	private final Walk walk;
+	/** Corridor tiles seen by walk(), only while building */
+	private ChunkedIntGrid walked;
+
+	/** Search used by {@link #findPath(int, int, Path)} */
+	private final RoadSearch search;
+	private final Landmarks landmarks;
+
+	public RoadGraph(GameModel gameModel) {
+		this.gameModel = gameModel;
+		this.width = gameModel.width;
+		this.height = gameModel.height;
+		this.built = false;
+		this.nodeOfTile = new ChunkedIntGrid(width, height, NONE);
+		this.freeNodes = new IntArray();
+		this.dirtyNodes = new IntArray();
+		this.walk = new Walk();
+		this.nodeCount = 0;
+		this.nodeTile = new int[0];
+		this.edgeTarget = new int[0];
+		this.edgeLength = new int[0];
+		ensureCapacity(64);
+		this.landmarks = new Landmarks(this);
+		this.search = new RoadSearch(this);
+	}
+
+	/**
+	 * @return Number of nodes currently in the graph.
+	 */
+	public int getNodeCount() {
+		ensureBuilt();
+		return nodeCount - freeNodes.size;
+	}
+
+	/**
+	 * @return Landmark tables that tighten the estimates of searches, turned off until given a count.
+	 */
+	public Landmarks getLandmarks() {
+		return landmarks;
+	}
+
+	/**
+	 * @return Number of nodes expanded by the last call to findPath.
+	 */
+	public int getExpandedCount() {
+		return search.getExpandedCount();
+	}
+
+	public boolean isNode(int tile) {
+		ensureBuilt();
+		return nodeOfTile.get(tile) != NONE;
+	}
+
+	/**
+	 * Finds a shortest path from start to goal. Only road tiles can be walked on,
+	 * but the start tile itself doesn't have to be a road.
+	 * Searches on other threads need a {@link RoadSearch} of their own.
+	 *
+	 * @param start Tile id to search from
+	 * @param goal Tile id to search to
+	 * @param out Receives the route, stamped with the current network version.
+	 *        It has no steps when start == goal or when no path exists.
+	 * @return true if goal can be reached.
+	 */
+	public boolean findPath(int start, int goal, Path out) {
+		ensureBuilt();
+		return search.findPath(start, goal, out);
+	}
+
+	/**
+	 * Finds a shortest path from start to the closest of several goals in a single search.
+	 * Searches on other threads need a {@link RoadSearch} of their own.
+	 *
+	 * @param start Tile id to search from
+	 * @param goals Tile ids to search to
+	 * @param out Receives the route to the goal reached
+	 * @return Index into goals of the goal reached, or -1 if none can be reached.
+	 */
+	public int findNearest(int start, IntArray goals, Path out) {
+		ensureBuilt();
+		return search.findNearest(start, goals, out);
+	}
+
+	/**
+	 * Checks the component labels, see {@link PathFinder#canReach(int, int)}.
+	 */
+	boolean canReach(int start, int goal) {
+		if(start == goal) {
+			return true;
+		}
+		if(connections(goal) < 0) {
+			return false;
+		}
+		NetworkComponents components = getComponents();
+		int component = components.getComponent(goal);
+		if(connections(start) >= 0) {
+			return components.getComponent(start) == component;
+		}
+		for(int dir = 0; dir < 4; dir++) {
+			int tile = neighbourInBounds(start, dir);
+			if(tile != NONE && connections(tile) >= 0 && components.getComponent(tile) == component) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	NetworkComponents getComponents() {
+		return gameModel.getComponents();
+	}
+
+	int getWidth() {
+		return width;
+	}
+
+	int getNetworkVersion() {
+		return gameModel.getNetworkVersion();
+	}
+
+	/**
+	 * @return Length of the node arrays, which node numbers stay below.
+	 */
+	int getCapacity() {
+		return nodeTile.length;
+	}
+
+	// *** Graph maintenance ***
+
+	/**
+	 * Call this after the network on a tile was set or cleared.
+	 * Only the nodes around the tile are reclassified, and only the nodes whose corridors
+	 * pass through the tile or its neighbours are relinked.
+	 */
+	public void tileChanged(Tile tile) {
+		if(!built) {
+			return;
+		}
+		int id = tile.getId();
+		classify(id);
+		for(int dir = 0; dir < 4; dir++) {
+			int n = neighbourInBounds(id, dir);
+			if(n != NONE) {
+				classify(n);
+			}
+		}
+
+		dirtyNodes.clear();
+		collect(id);
+		for(int dir = 0; dir < 4; dir++) {
+			int n = neighbourInBounds(id, dir);
+			if(n != NONE) {
+				collect(n);
+			}
+		}
+		for(int i = 0; i < dirtyNodes.size; i++) {
+			link(dirtyNodes.get(i));
+		}
+	}
+
+	/**
+	 * Builds the graph, and the component labels it uses, if that hasn't happened yet.
+	 * Call this before searching from another thread.
+	 */
+	public void ensureBuilt() {
+		if(built) {
+			return;
+		}
+		gameModel.getComponents().ensureBuilt();
+		nodeOfTile.clear();
+		WorldGrid grid = gameModel.getGrid();
+		for(int tile = grid.firstNetwork(); tile >= 0; tile = grid.nextNetwork(tile)) {
+			int mask = connections(tile);
+			if(mask >= 0 && Integer.bitCount(mask) != 2) {
+				addNode(tile);
+			}
+		}
+		walked = new ChunkedIntGrid(width, height, 0);
+		int junctions = nodeCount;
+		for(int node = 0; node < junctions; node++) {
+			link(node);
+		}
+		// Whatever corridor tiles are left over form rings without junctions
+		for(int tile = grid.firstNetwork(); tile >= 0; tile = grid.nextNetwork(tile)) {
+			if(walked.get(tile) == 0 && nodeOfTile.get(tile) == NONE && connections(tile) >= 0) {
+				link(addNode(tile));
+			}
+		}
+		walked = null;
+		built = true;
+	}
+
+	private void classify(int tile) {
+		int mask = connections(tile);
+		boolean junction = mask >= 0 && Integer.bitCount(mask) != 2;
+		int node = nodeOfTile.get(tile);
+		if(junction && node == NONE) {
+			addNode(tile);
+		} else if(!junction && node != NONE) {
+			removeNode(node);
+		}
+	}
+
+	/**
+	 * Marks the node on tile and the nodes at the ends of its corridors as dirty.
+	 */
+	private void collect(int tile) {
+		int mask = connections(tile);
+		if(mask < 0) {
+			return;
+		}
+		if(nodeOfTile.get(tile) != NONE) {
+			dirtyNodes.add(nodeOfTile.get(tile));
+		}
+		for(int dir = 0; dir < 4; dir++) {
+			if((mask & (1 << dir)) != 0) {
+				walk(tile, dir, walk);
+				int end = nodeOfTile.get(walk.end);
+				if(end == NONE) {
+					// Came back around a ring without junctions
+					end = addNode(tile);
+				}
+				dirtyNodes.add(end);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the corridors leaving a node.
+	 */
+	private void link(int node) {
+		int tile = nodeTile[node];
+		if(tile == NONE) {
+			return;
+		}
+		int mask = connections(tile);
+		int base = node * 4;
+		for(int dir = 0; dir < 4; dir++) {
+			if(mask >= 0 && (mask & (1 << dir)) != 0) {
+				walk(tile, dir, walk);
+				edgeTarget[base + dir] = nodeOfTile.get(walk.end);
+				edgeLength[base + dir] = walk.length;
+			} else {
+				edgeTarget[base + dir] = NONE;
+				edgeLength[base + dir] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Follows a corridor from a road tile until it reaches a node or comes back to where it started.
+	 *
+	 * @param out Receives where the corridor ends
+	 */
+	void walk(int from, int direction, Walk out) {
+		int tile = from;
+		int length = 0;
+		while(true) {
+			tile = neighbour(tile, direction);
+			length++;
+			if(nodeOfTile.get(tile) != NONE || tile == from) {
+				break;
+			}
+			if(walked != null) {
+				walked.set(tile, 1);
+			}
+			int mask = connections(tile) & ~(1 << OPPOSITE[direction]);
+			if(mask == 0) {
+				break;
+			}
+			direction = Integer.numberOfTrailingZeros(mask);
+		}
+		out.end = tile;
+		out.length = length;
+		out.lastDirection = direction;
+	}
+
+	private int addNode(int tile) {
+		int node;
+		if(freeNodes.size > 0) {
+			node = freeNodes.pop();
+		} else {
+			node = nodeCount++;
+			ensureCapacity(nodeCount);
+		}
+		nodeTile[node] = tile;
+		nodeOfTile.set(tile, node);
+		Arrays.fill(edgeTarget, node * 4, node * 4 + 4, NONE);
+		return node;
+	}
+
+	private void removeNode(int node) {
+		nodeOfTile.set(nodeTile[node], NONE);
+		nodeTile[node] = NONE;
+		Arrays.fill(edgeTarget, node * 4, node * 4 + 4, NONE);
+		freeNodes.add(node);
+	}
+
+	private void ensureCapacity(int nodes) {
+		int capacity = nodeTile.length;
+		if(nodes <= capacity) {
+			return;
+		}
+		while(capacity < nodes) {
+			capacity = Math.max(64, capacity * 2);
+		}
+		int old = nodeTile.length;
+		nodeTile = Arrays.copyOf(nodeTile, capacity);
+		// Unused node numbers have no tile
+		Arrays.fill(nodeTile, old, capacity, NONE);
+		edgeTarget = Arrays.copyOf(edgeTarget, capacity * 4);
+		edgeLength = Arrays.copyOf(edgeLength, capacity * 4);
+	}
+
+	// *** Tiles ***
+
+	/**
+	 * @return Road connections of a tile as a bit mask indexed by Direction ordinal,
+	 *         or -1 if the tile isn't a road.
+	 */
+	int connections(int tile) {
+		WorldGrid grid = gameModel.getGrid();
+		return grid.isRoad(tile) ? grid.getLinks(tile) : -1;
+	}
+
+	/**
+	 * Neighbouring tile id, assuming it exists.
+	 */
+	int neighbour(int tile, int direction) {
+		switch(direction) {
+		case 0:
+			return tile + width;
+		case 1:
+			return tile + 1;
+		case 2:
+			return tile - width;
+		default:
+			return tile - 1;
+		}
+	}
+
+	/**
+	 * Neighbouring tile id, or NONE at the edge of the map.
+	 */
+	int neighbourInBounds(int tile, int direction) {
+		int x = tile % width;
+		int y = tile / width;
+		switch(direction) {
+		case 0:
+			return y + 1 < height ? tile + width : NONE;
+		case 1:
+			return x + 1 < width ? tile + 1 : NONE;
+		case 2:
+			return y > 0 ? tile - width : NONE;
+		default:
+			return x > 0 ? tile - 1 : NONE;
+		}
+	}
+
+	int heuristic(int tile, int goal) {
+		int dx = tile % width - goal % width;
+		int dy = tile / width - goal / width;
+		return (dx < 0 ? -dx : dx) + (dy < 0 ? -dy : dy);
+	}
+
+	/**
+	 * Where a corridor followed by {@link RoadGraph#walk(int, int, Walk)} ends.
+	 */
+	static class Walk {
+		/** Tile id the walk stopped on */
+		int end;
+		int length;
+		/** Direction of the last step */
+		int lastDirection;
+	}
+}
@@ -0,0 +1,574 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.left.addd.utils.IntMinHeap;
+
+/**
+ * Search state for finding routes over a {@link RoadGraph}.
+ * The graph itself is only read, so several RoadSearches can run on it at once
+ * as long as nothing changes the roads in the meantime.
+ */
+public class RoadSearch {
+	private static final int NONE = RoadGraph.NONE;
+	/** Parent of a node that was reached straight from the start tile */
+	private static final int SEED = -2;
+	private static final int MAX_SEEDS = 8;
+
+	private final RoadGraph graph;
+	private final RoadGraph.Walk walk;
+
+	// Indexed by node number
+	private int[] cost;
+	private int[] parent;
+	/** Direction taken out of the parent, or the seed number for SEED parents */
+	private int[] parentDirection;
+	private int[] seen;
+	private int[] closed;
+	/** First goal end at the node, valid where goalSeen matches the generation */
+	private int[] goalFirst;
+	private int[] goalSeen;
+	private IntMinHeap open;
+	private int generation;
+	private int expanded;
+
+	// Ways from the start tile onto the graph
+	private final int[] seedFirstDirection = new int[MAX_SEEDS];
+	private final int[] seedTile = new int[MAX_SEEDS];
+	private final int[] seedDirection = new int[MAX_SEEDS];
+	private final int[] seedLength = new int[MAX_SEEDS];
+	private int seedCount;
+
+	/** Goal tile ids of the current search that can be reached, and where they were in the caller's list */
+	private final IntArray goals;
+	private final IntArray goalIndex;
+	/** Bounds around the goals, which the estimates measure to */
+	private int minX, maxX, minY, maxY;
+	/** Landmark tables for the current search, or null when they don't apply */
+	private Landmarks.Tables landmarks;
+	/** Distance from each landmark to the goal, or UNREACHED */
+	private int[] goalLandmark;
+
+	// Ways from the graph onto the goal tiles, two per goal at most
+	private int[] endNode;
+	private int[] endDistance;
+	private int[] endDirection;
+	/** Goal the end leads to, as an index into goals */
+	private int[] endGoal;
+	/** Next end at the same node, or NONE */
+	private int[] endNext;
+	private int endCount;
+
+	/** Tile id the current search runs from */
+	private int start;
+	/** Goal out is stamped with when no goal can be reached */
+	private int firstGoal;
+	/** Network version the current search began on */
+	private int version;
+
+	// Best route found so far
+	private int bestCost;
+	/** Node the goal is reached from, or NONE when start and goal share a corridor */
+	private int bestNode;
+	private int bestEnd;
+	private int directGoal;
+	private int directFirstDirection;
+	private int directTile;
+	private int directDirection;
+	private int directLength;
+	/** Index into the caller's goals of the goal the last finished search reached, or NONE */
+	private int found;
+
+	private final IntArray single;
+	private final IntArray chain;
+
+	public RoadSearch(RoadGraph graph) {
+		this.graph = graph;
+		this.walk = new RoadGraph.Walk();
+		this.goals = new IntArray();
+		this.goalIndex = new IntArray();
+		this.endNode = new int[8];
+		this.endDistance = new int[8];
+		this.endDirection = new int[8];
+		this.endGoal = new int[8];
+		this.endNext = new int[8];
+		this.goalLandmark = new int[0];
+		this.single = new IntArray(1);
+		this.chain = new IntArray();
+		this.cost = new int[0];
+		this.found = NONE;
+	}
+
+	/**
+	 * @return Number of nodes expanded by the last search, so far.
+	 */
+	public int getExpandedCount() {
+		return expanded;
+	}
+
+	/**
+	 * @return Index into the goals given to the last finished search of the goal it reached,
+	 *         or -1 if none could be reached.
+	 */
+	public int getFound() {
+		return found;
+	}
+
+	/**
+	 * Finds a shortest path from start to goal. Only road tiles can be walked on,
+	 * but the start tile itself doesn't have to be a road.
+	 * The graph has to be built already, see {@link RoadGraph#ensureBuilt()}.
+	 *
+	 * @param start Tile id to search from
+	 * @param goal Tile id to search to
+	 * @param out Receives the route, stamped with the current network version.
+	 *        It has no steps when start == goal or when no path exists.
+	 * @return true if goal can be reached.
+	 */
+	public boolean findPath(int start, int goal, Path out) {
+		return findNearest(start, single(goal), out) != NONE;
+	}
+
+	/**
+	 * Finds a shortest path from start to whichever of the goals is closest, in a single search.
+	 * A search with many goals costs about as much as one with the closest goal alone.
+	 *
+	 * @param start Tile id to search from
+	 * @param goals Tile ids to search to, in order of preference when they are equally close
+	 * @param out Receives the route to the goal reached, stamped with the current network version.
+	 *        If no goal can be reached, it ends on the first goal and has no steps.
+	 * @return Index into goals of the goal reached, or -1 if none can be reached.
+	 */
+	public int findNearest(int start, IntArray goals, Path out) {
+		if(!begin(start, goals, out)) {
+			resume(Integer.MAX_VALUE);
+			end(out);
+		}
+		return found;
+	}
+
+	/**
+	 * Starts a search that can be spread over several calls to {@link #resume(int)}.
+	 * Searches that need no expanding at all are answered right away.
+	 *
+	 * @return true if out already holds the answer, otherwise call resume until it returns true.
+	 */
+	public boolean begin(int start, int goal, Path out) {
+		return begin(start, single(goal), out);
+	}
+
+	/**
+	 * Starts a search to the closest of several goals, see {@link #begin(int, int, Path)}.
+	 * The goals are copied, so the list can be reused right away.
+	 */
+	public boolean begin(int start, IntArray goals, Path out) {
+		this.version = graph.getNetworkVersion();
+		this.start = start;
+		this.firstGoal = goals.size > 0 ? goals.get(0) : NONE;
+		expanded = 0;
+		found = NONE;
+		this.goals.clear();
+		goalIndex.clear();
+		for(int i = 0; i < goals.size; i++) {
+			int goal = goals.get(i);
+			if(goal == start) {
+				out.reset(start, goal, version, 0, true);
+				found = i;
+				return true;
+			}
+			// Goals on other pieces of road are left out without looking
+			if(graph.canReach(start, goal)) {
+				this.goals.add(goal);
+				goalIndex.add(i);
+			}
+		}
+		if(this.goals.size == 0) {
+			out.reset(start, firstGoal, version, 0, false);
+			return true;
+		}
+
+		ensureCapacity();
+		nextGeneration();
+		open.clear();
+		bestCost = Integer.MAX_VALUE;
+		bestNode = NONE;
+		findBounds();
+		findGoalEnds();
+		findGoalLandmarks();
+		seed(start);
+		return false;
+	}
+
+	/**
+	 * Expands at most maxExpansions more nodes of the search started by {@link #begin(int, int, Path)}.
+	 * The roads must not have changed since, see {@link #isStale()}.
+	 *
+	 * @return true once the search is over and {@link #end(Path)} can be called.
+	 */
+	public boolean resume(int maxExpansions) {
+		int[] edgeTarget = graph.edgeTarget;
+		int[] edgeLength = graph.edgeLength;
+		int stop = maxExpansions >= Integer.MAX_VALUE - expanded ? Integer.MAX_VALUE : expanded + maxExpansions;
+		while(!open.isEmpty()) {
+			if((open.peekPriority() >>> 32) >= bestCost) {
+				// Nothing left in the open list can beat the route we have
+				return true;
+			}
+			if(expanded >= stop) {
+				return false;
+			}
+			int node = open.pop();
+			closed[node] = generation;
+			expanded++;
+
+			int steps = cost[node];
+			if(goalSeen[node] == generation) {
+				for(int e = goalFirst[node]; e != NONE; e = endNext[e]) {
+					if(steps + endDistance[e] < bestCost) {
+						bestCost = steps + endDistance[e];
+						bestNode = node;
+						bestEnd = e;
+					}
+				}
+			}
+			int base = node * 4;
+			for(int dir = 0; dir < 4; dir++) {
+				int target = edgeTarget[base + dir];
+				if(target != NONE) {
+					relax(node, dir, target, steps + edgeLength[base + dir]);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the route found by a finished search.
+	 *
+	 * @return true if a goal can be reached.
+	 */
+	public boolean end(Path out) {
+		if(bestCost == Integer.MAX_VALUE) {
+			out.reset(start, firstGoal, version, 0, false);
+			found = NONE;
+			return false;
+		}
+		int goal = bestNode == NONE ? directGoal : endGoal[bestEnd];
+		buildPath(goals.get(goal), out);
+		found = goalIndex.get(goal);
+		return true;
+	}
+
+	/**
+	 * @return true if the roads changed since the search began, so it has to begin again.
+	 */
+	public boolean isStale() {
+		return version != graph.getNetworkVersion();
+	}
+
+	private IntArray single(int goal) {
+		single.clear();
+		single.add(goal);
+		return single;
+	}
+
+	private void relax(int from, int direction, int to, int steps) {
+		if(closed[to] == generation) {
+			return;
+		}
+		if(seen[to] == generation && cost[to] <= steps) {
+			return;
+		}
+		cost[to] = steps;
+		parent[to] = from;
+		parentDirection[to] = direction;
+		seen[to] = generation;
+		open.add(to, priority(steps, estimate(to)));
+	}
+
+	private void findBounds() {
+		int width = graph.getWidth();
+		minX = Integer.MAX_VALUE;
+		maxX = Integer.MIN_VALUE;
+		minY = Integer.MAX_VALUE;
+		maxY = Integer.MIN_VALUE;
+		for(int i = 0; i < goals.size; i++) {
+			int x = goals.get(i) % width;
+			int y = goals.get(i) / width;
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+	}
+
+	/**
+	 * Picks up the landmark tables if they are up to date, and works out how far the goal is
+	 * from each landmark. Only searches with a single goal use them.
+	 */
+	private void findGoalLandmarks() {
+		landmarks = graph.getLandmarks().getTables();
+		if(landmarks == null || landmarks.version != version || goals.size != 1) {
+			landmarks = null;
+			return;
+		}
+		int count = landmarks.count;
+		if(goalLandmark.length < count) {
+			goalLandmark = new int[count];
+		}
+		int[] distance = landmarks.distance;
+		for(int l = 0; l < count; l++) {
+			int best = Landmarks.UNREACHED;
+			for(int e = 0; e < endCount; e++) {
+				int d = distance[endNode[e] * count + l];
+				if(d != Landmarks.UNREACHED && (best == Landmarks.UNREACHED || d + endDistance[e] < best)) {
+					best = d + endDistance[e];
+				}
+			}
+			goalLandmark[l] = best;
+		}
+	}
+
+	/**
+	 * Steps from a node to the box around the goals. With one goal that's the distance to it,
+	 * and with more it's still never more than the distance to the closest one.
+	 * With landmarks, the estimate is raised to whatever the landmarks prove the way is at least.
+	 */
+	private int estimate(int node) {
+		int tile = graph.nodeTile[node];
+		int width = graph.getWidth();
+		int x = tile % width;
+		int y = tile / width;
+		int dx = x < minX ? minX - x : x > maxX ? x - maxX : 0;
+		int dy = y < minY ? minY - y : y > maxY ? y - maxY : 0;
+		int estimate = dx + dy;
+		if(landmarks != null) {
+			int count = landmarks.count;
+			int[] distance = landmarks.distance;
+			int base = node * count;
+			for(int l = 0; l < count; l++) {
+				int to = distance[base + l];
+				int goal = goalLandmark[l];
+				if(to != Landmarks.UNREACHED && goal != Landmarks.UNREACHED) {
+					int bound = to > goal ? to - goal : goal - to;
+					if(bound > estimate) {
+						estimate = bound;
+					}
+				}
+			}
+		}
+		return estimate;
+	}
+
+	/**
+	 * Finds the nodes each goal can be reached from: the goal itself if it's a node,
+	 * otherwise both ends of its corridor.
+	 */
+	private void findGoalEnds() {
+		endCount = 0;
+		for(int goal = 0; goal < goals.size; goal++) {
+			int tile = goals.get(goal);
+			int node = graph.nodeOfTile.get(tile);
+			if(node != NONE) {
+				addEnd(node, 0, NONE, goal);
+				continue;
+			}
+			int mask = graph.connections(tile);
+			for(int dir = 0; dir < 4; dir++) {
+				if((mask & (1 << dir)) != 0) {
+					graph.walk(tile, dir, walk);
+					addEnd(graph.nodeOfTile.get(walk.end), walk.length, RoadGraph.OPPOSITE[walk.lastDirection], goal);
+				}
+			}
+		}
+	}
+
+	private void addEnd(int node, int distance, int direction, int goal) {
+		if(endCount == endNode.length) {
+			int capacity = endCount * 2;
+			endNode = Arrays.copyOf(endNode, capacity);
+			endDistance = Arrays.copyOf(endDistance, capacity);
+			endDirection = Arrays.copyOf(endDirection, capacity);
+			endGoal = Arrays.copyOf(endGoal, capacity);
+			endNext = Arrays.copyOf(endNext, capacity);
+		}
+		int e = endCount++;
+		endNode[e] = node;
+		endDistance[e] = distance;
+		endDirection[e] = direction;
+		endGoal[e] = goal;
+		endNext[e] = goalSeen[node] == generation ? goalFirst[node] : NONE;
+		goalFirst[node] = e;
+		goalSeen[node] = generation;
+	}
+
+	/**
+	 * Puts the nodes reachable from the start tile without crossing a node into the open list.
+	 * A start tile off the road steps onto any neighbouring road first.
+	 */
+	private void seed(int start) {
+		seedCount = 0;
+		int mask = graph.connections(start);
+		if(mask >= 0) {
+			seedFrom(start, NONE, 0, mask);
+			return;
+		}
+		for(int dir = 0; dir < 4; dir++) {
+			int tile = graph.neighbourInBounds(start, dir);
+			if(tile != NONE) {
+				int tileMask = graph.connections(tile);
+				if(tileMask >= 0) {
+					seedFrom(tile, dir, 1, tileMask);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param tile Road tile the start tile enters the network on
+	 * @param firstDirection Direction from the start tile onto tile, or NONE if tile is the start
+	 * @param steps Steps taken to reach tile
+	 */
+	private void seedFrom(int tile, int firstDirection, int steps, int mask) {
+		for(int goal = 0; goal < goals.size; goal++) {
+			if(goals.get(goal) == tile) {
+				offerDirect(goal, firstDirection, tile, NONE, 0, steps);
+			}
+		}
+		int node = graph.nodeOfTile.get(tile);
+		if(node != NONE) {
+			addSeed(node, steps, firstDirection, tile, NONE, 0);
+			return;
+		}
+		for(int dir = 0; dir < 4; dir++) {
+			if((mask & (1 << dir)) != 0) {
+				graph.walk(tile, dir, walk);
+				int end = graph.nodeOfTile.get(walk.end);
+				if(end != NONE && goalSeen[end] == generation) {
+					// Goals whose corridor leaves end the way this walk came in lie on this corridor
+					int back = RoadGraph.OPPOSITE[walk.lastDirection];
+					for(int e = goalFirst[end]; e != NONE; e = endNext[e]) {
+						if(endDirection[e] == back && endDistance[e] < walk.length) {
+							int length = walk.length - endDistance[e];
+							offerDirect(endGoal[e], firstDirection, tile, dir, length, steps + length);
+						}
+					}
+				}
+				addSeed(end, steps + walk.length, firstDirection, tile, dir, walk.length);
+			}
+		}
+	}
+
+	private void addSeed(int node, int steps, int firstDirection, int tile, int direction, int length) {
+		int seed = seedCount++;
+		seedFirstDirection[seed] = firstDirection;
+		seedTile[seed] = tile;
+		seedDirection[seed] = direction;
+		seedLength[seed] = length;
+		if(seen[node] == generation && cost[node] <= steps) {
+			return;
+		}
+		cost[node] = steps;
+		parent[node] = SEED;
+		parentDirection[node] = seed;
+		seen[node] = generation;
+		open.add(node, priority(steps, estimate(node)));
+	}
+
+	private void offerDirect(int goal, int firstDirection, int tile, int direction, int length, int steps) {
+		if(steps < bestCost) {
+			bestCost = steps;
+			bestNode = NONE;
+			directGoal = goal;
+			directFirstDirection = firstDirection;
+			directTile = tile;
+			directDirection = direction;
+			directLength = length;
+		}
+	}
+
+	private void buildPath(int goal, Path out) {
+		out.reset(start, goal, version, bestCost, true);
+		int index;
+		if(bestNode == NONE) {
+			index = emitSeed(directFirstDirection, directTile, directDirection, directLength, out, 0);
+		} else {
+			chain.clear();
+			int node = bestNode;
+			while(parent[node] != SEED) {
+				chain.add(node);
+				node = parent[node];
+			}
+			int seed = parentDirection[node];
+			index = emitSeed(seedFirstDirection[seed], seedTile[seed], seedDirection[seed], seedLength[seed], out, 0);
+			int from = node;
+			for(int i = chain.size - 1; i >= 0; i--) {
+				int to = chain.get(i);
+				int dir = parentDirection[to];
+				index = emitCorridor(graph.nodeTile[from], dir, graph.edgeLength[from * 4 + dir], out, index);
+				from = to;
+			}
+			if(endDirection[bestEnd] != NONE) {
+				index = emitCorridor(graph.nodeTile[bestNode], endDirection[bestEnd], endDistance[bestEnd], out, index);
+			}
+		}
+	}
+
+	private int emitSeed(int firstDirection, int tile, int direction, int length, Path out, int index) {
+		if(firstDirection != NONE) {
+			out.setStep(index++, firstDirection);
+		}
+		if(direction != NONE) {
+			index = emitCorridor(tile, direction, length, out, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the steps of walking a corridor from tile, leaving by direction.
+	 */
+	private int emitCorridor(int tile, int direction, int length, Path out, int index) {
+		for(int i = 0; i < length; i++) {
+			out.setStep(index++, direction);
+			tile = graph.neighbour(tile, direction);
+			if(i + 1 < length) {
+				direction = Integer.numberOfTrailingZeros(graph.connections(tile) & ~(1 << RoadGraph.OPPOSITE[direction]));
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Catches up with the graph if it grew since the last search.
+	 */
+	private void ensureCapacity() {
+		int capacity = graph.getCapacity();
+		if(cost.length >= capacity) {
+			return;
+		}
+		cost = new int[capacity];
+		parent = new int[capacity];
+		parentDirection = new int[capacity];
+		seen = new int[capacity];
+		closed = new int[capacity];
+		goalFirst = new int[capacity];
+		goalSeen = new int[capacity];
+		open = new IntMinHeap(capacity);
+		generation = 0;
+	}
+
+	private void nextGeneration() {
+		if(generation == Integer.MAX_VALUE) {
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			Arrays.fill(goalSeen, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	private static long priority(int steps, int estimate) {
+		return ((long) (steps + estimate) << 32) | estimate;
+	}
+}
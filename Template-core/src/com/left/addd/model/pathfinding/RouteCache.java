@@ -0,0 +1,138 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.ArrayList;
+
+import com.left.addd.model.GameModel;
+import com.left.addd.utils.LRUCache;
+import com.left.addd.utils.LRUCache.CacheEntryRemovedListener;
+import com.left.addd.utils.LRUCache.Weigher;
+
+/**
+ * Routes solved recently, shared by every entity, so crowds going the same way
+ * (commuters from one block of houses to the same factory) only search once.
+ * Routes are keyed by their start and goal tile ids packed into a long, and the least recently used
+ * are dropped when the paths take up more than the memory the cache is given.
+ * Every route is planned against the network version the cache is stamped with;
+ * the first use after the roads changed empties the cache.
+ */
+public class RouteCache implements CacheEntryRemovedListener<Long, Path>, Weigher<Long, Path> {
+	/** Bytes of paths kept by default */
+	public static final int DEFAULT_WEIGHT = 256 * 1024;
+	/** Dropped paths kept around for reuse */
+	private static final int MAX_SPARE = 64;
+
+	private final GameModel gameModel;
+	private final LRUCache<Long, Path> routes;
+	/** Paths of dropped routes, reused for new ones */
+	private final ArrayList<Path> spare;
+	/** Network version every cached route was planned against */
+	private int version;
+	private long hits;
+	private long misses;
+
+	public RouteCache(GameModel gameModel, int maxWeight) {
+		this.gameModel = gameModel;
+		this.routes = new LRUCache<Long, Path>(maxWeight, this);
+		this.routes.setEntryRemovedListener(this);
+		this.spare = new ArrayList<Path>();
+		this.version = gameModel.getNetworkVersion();
+	}
+
+	/**
+	 * Copies the cached route from start to goal into out, if there is one for the current network.
+	 *
+	 * @return true on a hit.
+	 */
+	public boolean get(int start, int goal, Path out) {
+		checkVersion();
+		Path route = routes.get(key(start, goal));
+		if(route == null) {
+			misses++;
+			return false;
+		}
+		hits++;
+		out.set(route);
+		return true;
+	}
+
+	/**
+	 * Keeps a copy of a route that was just solved. Routes planned on older roads are ignored.
+	 */
+	public void put(Path route) {
+		checkVersion();
+		if(route.getVersion() != version) {
+			return;
+		}
+		Path copy = spare.isEmpty() ? new Path() : spare.remove(spare.size() - 1);
+		copy.set(route);
+		routes.put(key(route.getStart(), route.getGoal()), copy);
+	}
+
+	public void clear() {
+		routes.clear();
+	}
+
+	/**
+	 * @return Lookups that found a route, since the counters were last reset.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return Lookups that didn't find a route, since the counters were last reset.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	public void resetCounters() {
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * @return Number of routes kept.
+	 */
+	public int size() {
+		return routes.size();
+	}
+
+	/**
+	 * @return Bytes taken up by the routes kept, roughly.
+	 */
+	public int getWeight() {
+		return routes.getWeight();
+	}
+
+	@Override
+	public String toString() {
+		long lookups = hits + misses;
+		return size() + " routes, " + (getWeight() / 1024) + "/" + (routes.getMaxWeight() / 1024) + " kB, "
+				+ hits + " hits, " + misses + " misses" + (lookups > 0 ? " (" + (hits * 100 / lookups) + "% hit)" : "");
+	}
+
+	@Override
+	public int weigh(Long key, Path route) {
+		return route.getMemoryWeight();
+	}
+
+	@Override
+	public void notifyEntryRemoved(Long key, Path route) {
+		if(spare.size() < MAX_SPARE) {
+			spare.add(route);
+		}
+	}
+
+	static long key(int start, int goal) {
+		return ((long) start << 32) | (goal & 0xffffffffL);
+	}
+
+	private void checkVersion() {
+		int current = gameModel.getNetworkVersion();
+		if(version != current) {
+			routes.clear();
+			version = current;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.left.addd.model.pathfinding;
+
+import java.util.List;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Solves requests on the calling thread, for platforms without threads like HTML.
+ * Each frame searches for as long as its {@link PathBudget} allows, oldest request first.
+ * A search that runs out of budget is paused and picked up again the next frame.
+ * Before a road changes, the paused search is finished off, so edits every frame can't starve it,
+ * and the rest of the batch is left for the next one, to be searched on the new roads.
+ * Requests that aren't solved by the next tick stay pending until a later one.
+ *
+ * Without limits, the whole batch is solved by the next tick whatever the frame rate is,
+ * and on the roads it was started on, even if a road changes before the tick.
+ */
+public class SynchronousPathSolver implements PathSolver {
+	/** Nodes expanded between looking at the clock */
+	private static final int CLOCK_INTERVAL = 64;
+
+	private final RoadSearch search;
+	private final PathBudget budget;
+	private List<PathRequest> batch;
+	/** Index of the first request in batch that may still be pending */
+	private int next;
+	/** Request whose search is paused in search, or null */
+	private PathRequest paused;
+
+	public SynchronousPathSolver(RoadGraph graph, PathBudget budget) {
+		this.search = new RoadSearch(graph);
+		this.budget = budget;
+	}
+
+	public PathBudget getBudget() {
+		return budget;
+	}
+
+	@Override
+	public void start(List<PathRequest> batch) {
+		this.batch = batch;
+		this.next = 0;
+	}
+
+	@Override
+	public void update() {
+		if(batch == null || next >= batch.size()) {
+			return;
+		}
+		long begin = TimeUtils.nanoTime();
+		long deadline = budget.getMicrosPerFrame() > 0 ? begin + budget.getMicrosPerFrame() * 1000L : Long.MAX_VALUE;
+		int nodes = budget.getNodesPerFrame() > 0 ? budget.getNodesPerFrame() : Integer.MAX_VALUE;
+		int used = solve(nodes, deadline);
+		budget.record(used, TimeUtils.nanoTime() - begin);
+	}
+
+	@Override
+	public void finish() {
+		if(batch != null && budget.isUnlimited()) {
+			solve(Integer.MAX_VALUE, Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Without limits, solves what is left of the batch, as {@link #finish()} would, so routes don't depend on
+	 * whether a frame got to them before the edit. With limits, only finishes the paused search and hands
+	 * the requests not started yet back to the queue, which submits them again with the next batch.
+	 */
+	@Override
+	public void roadsChanging() {
+		if(batch == null) {
+			return;
+		}
+		if(budget.isUnlimited()) {
+			solve(Integer.MAX_VALUE, Long.MAX_VALUE);
+			return;
+		}
+		if(paused != null && !search.isStale()) {
+			search.resume(Integer.MAX_VALUE);
+			search.end(paused.getPath());
+			paused.solved(search.getFound());
+		}
+		paused = null;
+		next = batch.size();
+	}
+
+	@Override
+	public void dispose() {
+		batch = null;
+		paused = null;
+	}
+
+	/**
+	 * Works through the batch until it's done or out of nodes or time.
+	 *
+	 * @return Number of nodes expanded.
+	 */
+	private int solve(int nodes, long deadline) {
+		int used = 0;
+		while(next < batch.size()) {
+			PathRequest request = batch.get(next);
+			if(!request.isPending()) {
+				next++;
+				continue;
+			}
+			if(request != paused || search.isStale()) {
+				paused = null;
+				if(search.begin(request.getStart(), request.getGoals(), request.getPath())) {
+					request.solved(search.getFound());
+					next++;
+					continue;
+				}
+				paused = request;
+			}
+			boolean over = false;
+			while(!over) {
+				if(used >= nodes || (deadline != Long.MAX_VALUE && TimeUtils.nanoTime() >= deadline)) {
+					return used;
+				}
+				int before = search.getExpandedCount();
+				over = search.resume(Math.min(CLOCK_INTERVAL, nodes - used));
+				used += search.getExpandedCount() - before;
+			}
+			search.end(request.getPath());
+			request.solved(search.getFound());
+			paused = null;
+			next++;
+		}
+		return used;
+	}
+
+	public static class Factory implements PathSolver.Factory {
+		private final PathBudget budget;
+
+		public Factory() {
+			this(new PathBudget());
+		}
+
+		/**
+		 * @param budget Shared by every solver made, so its limits can be changed in one place.
+		 */
+		public Factory(PathBudget budget) {
+			this.budget = budget;
+		}
+
+		public PathBudget getBudget() {
+			return budget;
+		}
+
+		@Override
+		public PathSolver create(RoadGraph graph) {
+			return new SynchronousPathSolver(graph, budget);
+		}
+	}
+}
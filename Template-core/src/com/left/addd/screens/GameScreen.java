@@ -6,24 +6,45 @@ import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.left.addd.AdddGame;
 import com.left.addd.model.GameModel;
+import com.left.addd.model.Recording;
+import com.left.addd.model.RecordingSimulation;
+import com.left.addd.model.Simulation;
 import com.left.addd.services.MusicManager.Playlist;
 import com.left.addd.view.GameView;
 import com.left.addd.view.UIView;
 
 public class GameScreen extends AbstractScreen {
 	private GameModel gameModel;
+	private Simulation simulation;
 	private GameView gameView;
 	private UIView uiView;
+	/** What the player does, if the game records sessions */
+	private Recording recording;
 
 	public GameScreen(AdddGame game) {
-		this(game, new GameModel(15, 15));
+		this(game, new GameModel(15, 15), false);
 	}
 	
+	/**
+	 * @param model A loaded game
+	 */
 	public GameScreen(AdddGame game, GameModel model) {
+		this(game, model, true);
+	}
+
+	private GameScreen(AdddGame game, GameModel model, boolean loaded) {
 		super(game);
 		
 		gameModel = model;
-		gameView = new GameView(game, gameModel, getAtlas());
+		gameModel.getPathFinder().setSolver(game.getPathSolvers());
+		gameModel.setEntityPlanner(game.getEntityPlanners());
+		simulation = game.getSimulations().create(gameModel);
+		if(game.isRecording()) {
+			// A new game replays from a new game, a loaded one from what was loaded
+			recording = new Recording(loaded ? game.getSaver().write(gameModel) : null, gameModel.getTime().getTime());
+			simulation = new RecordingSimulation(simulation, recording);
+		}
+		gameView = new GameView(game, simulation, getAtlas());
 		uiView = new UIView(game, gameView, getAtlas(), getSkin());
 	}
 
@@ -54,23 +75,26 @@ public class GameScreen extends AbstractScreen {
 		if(uiView.getState() == UIView.State.RUNNING) {
 			switch(uiView.getSpeed()) {
 			case PAUSE:
+				simulation.update(0);
 				gameView.render(batch, delta);
 				break;
 			case NORMAL:
-				gameModel.update(delta);
+				simulation.update(delta);
 				gameView.render(batch, delta);
 				break;
 			case FASTER:
 				// TODO set actual speeds
-				gameModel.update(delta * 2);
+				simulation.update(delta * 2);
 				gameView.render(batch, delta * 2);
 				break;
 			case FASTEST:
-				gameModel.update(delta * 5);
+				simulation.update(delta * 5);
 				gameView.render(batch, delta * 5);
 				break;
 			}
 		} else {
+			// Still runs the player's commands, such as saving
+			simulation.update(0);
 			gameView.render(batch, delta);
 		}
 		
@@ -89,5 +113,10 @@ public class GameScreen extends AbstractScreen {
 	@Override
 	public void dispose() {
 		super.dispose();
+		simulation.dispose();
+		gameModel.dispose();
+		if(recording != null) {
+			game.getSaver().saveRecording(recording);
+		}
 	}
 }
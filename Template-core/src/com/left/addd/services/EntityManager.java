@@ -1,56 +1,171 @@
 package com.left.addd.services;
 
 import java.util.ArrayList;
-import java.util.Set;
+import java.util.LinkedHashSet;
 
 import com.left.addd.model.Entity;
+import com.left.addd.model.EntityStore;
+import com.left.addd.model.StateChangedListener;
 
-public class EntityManager {
+public class EntityManager implements StateChangedListener<Entity> {
 	
-	private static ArrayList<Entity> entityPool;
-	private static EntityManager manager;
+	/** Width of the map, to tell x and y from tile ids */
+	private final int width;
+	private final ArrayList<Entity> entityPool;
+	/** Where the entities are, kept up to date through their state changes */
+	private final EntitySpatialHash index;
+	/** When the entities arrive at their next tile, kept up to date the same way */
+	private final EntityScheduler scheduler;
+	/** Entities that may have come next to one of their objectives since the last check */
+	private final LinkedHashSet<Entity> triggered;
+	/** Scratch for queries */
+	private final ArrayList<Entity> nearby;
 	
-	public EntityManager() {
+	/**
+	 * @param width Width of the map in tiles
+	 * @param now Current tick, the game time in hours
+	 */
+	public EntityManager(int width, long now) {
+		this.width = width;
 		entityPool = new ArrayList<Entity>();
-	}
-	
-	public static EntityManager getInstance() {
-		if (manager == null) {
-			manager = new EntityManager();
-		}
-		return manager;
+		index = new EntitySpatialHash();
+		scheduler = new EntityScheduler(now);
+		triggered = new LinkedHashSet<Entity>();
+		nearby = new ArrayList<Entity>();
 	}
 	
 	public void addEntity(Entity em) {
 		entityPool.add(em);
+		int tile = em.getCurrentTileId();
+		index.add(em, tile % width, tile / width);
+		scheduler.add(em);
+		em.addStateChangedListener(this);
+		moved(em);
 	}
 	
 	public void freeEntity(Entity em) {
 		entityPool.remove(em);
+		index.remove(em);
+		scheduler.remove(em);
+		em.removeStateChangedListener(this);
+		triggered.remove(em);
+	}
+
+	/**
+	 * Adds an objective to an entity that is already managed, so it is checked without waiting for anyone to move.
+	 *
+	 * @param em Entity the objective is for
+	 * @param objective Entity to come next to
+	 * @param target What em then heads for
+	 */
+	public void addObjective(Entity em, Entity objective, Entity target) {
+		em.addObjective(objective, target);
+		triggered.add(em);
 	}
 	
 	public ArrayList<Entity> getEntities() {
 		return entityPool;
 	}
+
+	/**
+	 * @return Index for finding entities by where they are.
+	 */
+	public EntitySpatialHash getIndex() {
+		return index;
+	}
+
+	/**
+	 * Updates the entities that arrive at their next tile up to the given tick, see {@link EntityScheduler}.
+	 *
+	 * @param time Current tick, the game time in hours
+	 */
+	public void update(long time) {
+		scheduler.update(time);
+	}
+
+	public EntityScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Stops the threads of the scheduler's planner, if it has any.
+	 */
+	public void dispose() {
+		scheduler.setPlanner(null);
+	}
+
+	@Override
+	public void OnStateChanged(Entity entity) {
+		scheduler.changed(entity);
+		int tile = entity.getCurrentTileId();
+		int x = tile % width;
+		int y = tile / width;
+		if (index.hasMoved(entity, x, y)) {
+			// Whoever it left may now be next to a different objective first
+			triggerAround(entity);
+			index.update(entity, x, y);
+			moved(entity);
+		}
+	}
+
+	/**
+	 * Only an entity that moved, or one it moved next to or away from, can have a different objective next to it.
+	 */
+	private void moved(Entity entity) {
+		triggered.add(entity);
+		triggerAround(entity);
+	}
+
+	/**
+	 * Triggers the entities next to where the index has the entity that have it as an objective.
+	 */
+	private void triggerAround(Entity entity) {
+		nearby.clear();
+		index.queryAround(entity, 1, nearby);
+		for (Entity e : nearby) {
+			if (e != entity && e.hasObjective(entity)) {
+				triggered.add(e);
+			}
+		}
+	}
 	
+	/**
+	 * Points entities that came next to one of their objectives since the last call at that objective's target.
+	 * Costs as much as there were moves, however many entities and objectives there are.
+	 */
 	public void checkObjectivesAndUpdateTargets() {
-		for (Entity em : entityPool) {
-			Set<Entity> objectives = em.getObjectives().keySet();
-			for(Entity o : objectives) {
-				if (checkAdjacency(em,o)) {
-					em.setTargetEntity(em.getObjectives().get(o));
+		if (triggered.isEmpty()) {
+			return;
+		}
+		for (Entity em : triggered) {
+			if (!em.hasObjectives()) {
+				continue;
+			}
+			// Only entities standing next to this one can be adjacent objectives
+			int tile = em.getCurrentTileId();
+			int x = tile % width;
+			int y = tile / width;
+			nearby.clear();
+			if (index.queryRect(x - 1, y - 1, x + 1, y + 1, nearby) <= 1 && !em.hasObjective(em)) {
+				continue;
+			}
+			EntityStore store = em.getStore();
+			for (int o = store.getFirstObjective(em.getId()); o != EntityStore.NONE; o = store.getNextObjective(o)) {
+				if (checkAdjacency(em, store.getEntity(store.getTrigger(o)))) {
+					em.setTargetEntity(store.getEntity(store.getObjectiveTarget(o)));
 					break;
 				}
 			}
 		}
+		triggered.clear();
 	}
 	
 	private boolean checkAdjacency(Entity e1, Entity e2) {
-		int e1_x = e1.getCurrentTile().x;
-		int e1_y = e1.getCurrentTile().y;
+		int e1_x = e1.getCurrentTileId() % width;
+		int e1_y = e1.getCurrentTileId() / width;
 		
-		int e2_x = e2.getCurrentTile().x;
-		int e2_y = e2.getCurrentTile().y;
+		int e2_x = e2.getCurrentTileId() % width;
+		int e2_y = e2.getCurrentTileId() / width;
 		
 		if ((e1_x + 1 == e2_x || e1_x - 1 == e2_x || e1_x == e2_x) &&
 			(e1_y + 1 == e2_y || e1_y - 1 == e2_y || e1_y == e2_y)) {
@@ -0,0 +1,32 @@
+package com.left.addd.services;
+
+import java.util.List;
+
+import com.left.addd.model.Entity;
+
+/**
+ * Plans the arrivals of the entities woken on the same tick, see {@link Entity#plan()}, before the
+ * {@link EntityScheduler} carries them out one by one in its usual order. Planning only reads the world,
+ * so a planner is free to plan them all at once on as many threads as it has, and the game comes out
+ * the same as if every entity had just been updated in turn.
+ * Without a planner the entities are simply updated in turn.
+ */
+public interface EntityPlanner {
+	/**
+	 * Calls {@link Entity#plan()} on each of the entities, and returns once all of them are planned.
+	 * Nothing changes the entities or the map meanwhile.
+	 */
+	void plan(List<Entity> entities);
+
+	/**
+	 * Stops any threads the planner started.
+	 */
+	void dispose();
+
+	/**
+	 * Makes a planner for each GameModel, which lets every platform pick its own.
+	 */
+	public interface Factory {
+		EntityPlanner create();
+	}
+}
@@ -0,0 +1,244 @@
+package com.left.addd.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import com.left.addd.model.Entity;
+
+/**
+ * Wakes each entity only on the tick it arrives at its next tile, rather than adding a tick
+ * to the move of every entity every tick, so a tick costs as much as there are arrivals.
+ * Entities with nothing to do, see {@link Entity#isParked()}, aren't woken at all
+ * until their state changes.
+ * <p>
+ * A timing wheel of WHEEL_SIZE slots, one per tick, each with the entities due on a tick
+ * that falls on it. Entities due further ahead than the wheel goes round stay in their slot
+ * until their turn comes. Entities due on the same tick are woken in the order they were added,
+ * and woken on the same ticks an update every tick would have them arrive on.
+ * <p>
+ * With an {@link EntityPlanner}, the arrivals of a tick are planned all at once first,
+ * then carried out in the same order.
+ */
+public class EntityScheduler {
+	public static final int WHEEL_SIZE = 256;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private final ArrayList<ArrayList<Wake>> wheel;
+	private final HashMap<Entity, Wake> wakes;
+	/** Last tick run */
+	private long now;
+	private long added;
+	/** Entity being woken, whose own state changes are taken care of once it's done */
+	private Entity waking;
+	/** Plans the arrivals of a tick before they are carried out, or null to just update each */
+	private EntityPlanner planner;
+
+	// Scratch for update()
+	private ArrayList<Wake> slot;
+	private final ArrayList<Wake> due;
+	private final ArrayList<Entity> planning;
+	private final Comparator<Wake> byOrder;
+
+	public EntityScheduler(long now) {
+		this.wheel = new ArrayList<ArrayList<Wake>>(WHEEL_SIZE);
+		for(int i = 0; i < WHEEL_SIZE; i++) {
+			wheel.add(new ArrayList<Wake>());
+		}
+		this.wakes = new HashMap<Entity, Wake>();
+		this.now = now;
+		this.added = 0;
+		this.waking = null;
+		this.slot = new ArrayList<Wake>();
+		this.due = new ArrayList<Wake>();
+		this.planning = new ArrayList<Entity>();
+		this.byOrder = new Comparator<Wake>() {
+			@Override
+			public int compare(Wake a, Wake b) {
+				return a.order < b.order ? -1 : a.order == b.order ? 0 : 1;
+			}
+		};
+	}
+
+	/**
+	 * @param planner Plans the arrivals of each tick all at once, or null to just update the entities in turn.
+	 *        The previous planner is disposed of.
+	 */
+	public void setPlanner(EntityPlanner planner) {
+		if(this.planner != null) {
+			this.planner.dispose();
+		}
+		this.planner = planner;
+	}
+
+	public void add(Entity entity) {
+		if(wakes.containsKey(entity)) {
+			return;
+		}
+		Wake wake = new Wake(entity, added++);
+		wakes.put(entity, wake);
+		sync(wake);
+		schedule(wake);
+	}
+
+	public void remove(Entity entity) {
+		Wake wake = wakes.remove(entity);
+		if(wake != null) {
+			// Left in its slot, dropped when the slot comes up
+			wake.queued = -1;
+		}
+	}
+
+	/**
+	 * Call whenever the entity's state changed, so it is woken when it should be. Started moves,
+	 * new targets or objectives and a different move duration all change when that is.
+	 */
+	public void changed(Entity entity) {
+		if(entity == waking) {
+			return;
+		}
+		Wake wake = wakes.get(entity);
+		if(wake == null) {
+			return;
+		}
+		if(entity.getMoveProgress() != wake.progress) {
+			// Only a new move starts over, which counts from now
+			sync(wake);
+		}
+		schedule(wake);
+	}
+
+	/**
+	 * Wakes every entity due up to the given tick, one tick at a time.
+	 *
+	 * @param time Current tick, the game time in hours
+	 */
+	public void update(long time) {
+		while(now < time) {
+			now++;
+			runSlot();
+		}
+	}
+
+	/**
+	 * @return Number of entities that will be woken some time, parked ones not counted.
+	 */
+	public int getScheduledCount() {
+		int count = 0;
+		for(Wake wake: wakes.values()) {
+			if(wake.queued >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void runSlot() {
+		int index = (int) (now & WHEEL_MASK);
+		ArrayList<Wake> current = wheel.get(index);
+		// Swapped out, so entities woken back into this slot go into a fresh list
+		wheel.set(index, slot);
+		slot = current;
+		for(int i = 0; i < current.size(); i++) {
+			Wake wake = current.get(i);
+			if(wake.entry != i || (wake.queued & WHEEL_MASK) != index) {
+				// Moved to another tick or removed since
+				continue;
+			}
+			if(wake.queued == now) {
+				due.add(wake);
+			} else if(wake.queued > now) {
+				// Another time round the wheel
+				wake.entry = wheel.get(index).size();
+				wheel.get(index).add(wake);
+			}
+		}
+		current.clear();
+		if(due.size() > 1) {
+			Collections.sort(due, byOrder);
+		}
+		boolean planned = planner != null && due.size() > 1;
+		if(planned) {
+			for(int i = 0; i < due.size(); i++) {
+				planning.add(due.get(i).entity);
+			}
+			planner.plan(planning);
+			planning.clear();
+		}
+		for(int i = 0; i < due.size(); i++) {
+			Wake wake = due.get(i);
+			if(wake.queued != now) {
+				// Removed by an entity woken before it
+				continue;
+			}
+			wake.queued = -1;
+			Entity entity = wake.entity;
+			waking = entity;
+			// Just enough to arrive, as if it had been updated every tick
+			int ticks = Math.max(1, entity.getMoveDuration() - entity.getMoveProgress());
+			if(planned) {
+				entity.updatePlanned(ticks);
+			} else {
+				entity.update(ticks);
+			}
+			waking = null;
+			if(wakes.get(entity) == wake) {
+				sync(wake);
+				schedule(wake);
+			}
+		}
+		due.clear();
+	}
+
+	private void sync(Wake wake) {
+		wake.synced = now;
+		wake.progress = wake.entity.getMoveProgress();
+	}
+
+	/**
+	 * Puts the entity in the slot of the tick it arrives on, counting from when it was last synced,
+	 * or takes it off the wheel if it's parked.
+	 */
+	private void schedule(Wake wake) {
+		Entity entity = wake.entity;
+		if(entity.isParked() && wake.progress == 0) {
+			wake.queued = -1;
+			return;
+		}
+		int duration = Math.max(1, entity.getMoveDuration());
+		long tick = wake.synced + Math.max(1, duration - wake.progress);
+		if(tick <= now) {
+			// Was parked, and would have gone on waking every duration ticks with nothing to do
+			tick += ((now - tick) / duration + 1) * duration;
+		}
+		if(tick == wake.queued) {
+			return;
+		}
+		wake.queued = tick;
+		ArrayList<Wake> list = wheel.get((int) (tick & WHEEL_MASK));
+		wake.entry = list.size();
+		list.add(wake);
+	}
+
+	/**
+	 * When an entity is woken next.
+	 */
+	private static class Wake {
+		final Entity entity;
+		final long order;
+		/** Tick it is due on, or -1 if it isn't on the wheel */
+		long queued;
+		/** Index of its current entry in the slot of queued, older entries there are stale */
+		int entry;
+		/** Tick its move progress was last brought up to date, and what the progress was then */
+		long synced;
+		int progress;
+
+		Wake(Entity entity, long order) {
+			this.entity = entity;
+			this.order = order;
+			this.queued = -1;
+		}
+	}
+}
@@ -0,0 +1,361 @@
+package com.left.addd.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+import com.left.addd.model.Entity;
+import com.left.addd.model.Tile;
+
+/**
+ * Finds entities by where they are. The map is cut into square cells, and every entity is kept
+ * in each cell its footprint covers, so a query only looks at the entities in the cells it overlaps
+ * however many there are elsewhere.
+ * An entity's footprint is the {@link Entity#getWidth()} by {@link Entity#getHeight()} tiles
+ * up and to the right of its current tile, or of the tile it was put on for a copy of the entities
+ * kept on another thread. Distances are from a tile to the nearest tile of a footprint.
+ * Results come in the order the entities were added, nearest queries in order of distance.
+ */
+public class EntitySpatialHash {
+	public static final int DEFAULT_CELL_SHIFT = 3;
+
+	private final int cellShift;
+	/** Entities in each cell, keyed by cell coordinates packed into a long */
+	private final LongMap<Array<Entity>> cells;
+	private final HashMap<Entity, Placement> placements;
+	private int added;
+	/** Marks entities already seen by the current query, so multi-cell ones are only counted once */
+	private int stamp;
+
+	// Scratch for nearest()
+	private final ArrayList<Entity> best;
+	private long[] bestKeys;
+
+	public EntitySpatialHash() {
+		this(DEFAULT_CELL_SHIFT);
+	}
+
+	/**
+	 * @param cellShift Cells are 2^cellShift tiles a side.
+	 */
+	public EntitySpatialHash(int cellShift) {
+		this.cellShift = cellShift;
+		this.cells = new LongMap<Array<Entity>>();
+		this.placements = new HashMap<Entity, Placement>();
+		this.added = 0;
+		this.stamp = 0;
+		this.best = new ArrayList<Entity>();
+		this.bestKeys = new long[8];
+	}
+
+	public int size() {
+		return placements.size();
+	}
+
+	// *** Updates ***
+
+	public void add(Entity entity) {
+		Tile tile = entity.getCurrentTile();
+		add(entity, tile.x, tile.y);
+	}
+
+	/**
+	 * Adds the entity as standing on the tile at (x, y), wherever it is now.
+	 * Keep it up to date with {@link #update(Entity, int, int)} rather than {@link #update(Entity)}.
+	 */
+	public void add(Entity entity, int x, int y) {
+		if(placements.containsKey(entity)) {
+			return;
+		}
+		Placement p = new Placement(added++);
+		placements.put(entity, p);
+		place(entity, p, x, y);
+	}
+
+	public void remove(Entity entity) {
+		Placement p = placements.remove(entity);
+		if(p != null) {
+			unplace(entity, p);
+		}
+	}
+
+	/**
+	 * @return true if the entity is somewhere else than where it was last put, false if it isn't in here.
+	 */
+	public boolean hasMoved(Entity entity) {
+		Tile tile = entity.getCurrentTile();
+		return hasMoved(entity, tile.x, tile.y);
+	}
+
+	/**
+	 * Moves the entity to where it is now, if that changed. Cheap enough to call on every state change.
+	 *
+	 * @return true if it moved.
+	 */
+	public boolean update(Entity entity) {
+		Tile tile = entity.getCurrentTile();
+		return update(entity, tile.x, tile.y);
+	}
+
+	/**
+	 * Moves the entity to the tile at (x, y), if it isn't there already.
+	 *
+	 * @return true if it moved.
+	 */
+	public boolean update(Entity entity, int x, int y) {
+		if(!hasMoved(entity, x, y)) {
+			return false;
+		}
+		Placement p = placements.get(entity);
+		unplace(entity, p);
+		place(entity, p, x, y);
+		return true;
+	}
+
+	/**
+	 * @return true if the entity was last put somewhere else than the tile at (x, y), false if it isn't in here.
+	 */
+	public boolean hasMoved(Entity entity, int x, int y) {
+		Placement p = placements.get(entity);
+		if(p == null) {
+			return false;
+		}
+		return x != p.x || y != p.y || entity.getWidth() != p.width || entity.getHeight() != p.height;
+	}
+
+	// *** Queries ***
+
+	/**
+	 * Adds the entities whose footprint overlaps the rectangle to out.
+	 *
+	 * @param x0 Left column, inclusive
+	 * @param y0 Bottom row, inclusive
+	 * @param x1 Right column, inclusive
+	 * @param y1 Top row, inclusive
+	 * @return Number of entities added.
+	 */
+	public int queryRect(int x0, int y0, int x1, int y1, List<Entity> out) {
+		return query(x0, y0, x1, y1, x0, y0, -1, out);
+	}
+
+	/**
+	 * Adds the entities whose footprint overlaps the footprint of an entity in here, grown by reach tiles
+	 * on every side, to out, the entity itself included. Goes by where the entity was last put,
+	 * so before an {@link #update(Entity)} this finds what was around it before it moved.
+	 *
+	 * @return Number of entities added.
+	 */
+	public int queryAround(Entity entity, int reach, List<Entity> out) {
+		Placement p = placements.get(entity);
+		if(p == null) {
+			return 0;
+		}
+		return queryRect(p.x - reach, p.y - reach, p.x + p.width - 1 + reach, p.y + p.height - 1 + reach, out);
+	}
+
+	/**
+	 * Adds the entities whose footprint is within radius tiles of the tile at (x, y) to out.
+	 *
+	 * @return Number of entities added.
+	 */
+	public int queryRadius(int x, int y, int radius, List<Entity> out) {
+		return query(x - radius, y - radius, x + radius, y + radius, x, y, (long) radius * radius, out);
+	}
+
+	/**
+	 * Adds the k entities nearest to the tile at (x, y) to out, nearest first. Entities as near
+	 * as each other come in the order they were added. Only looks further out while the nearest
+	 * found so far could still be beaten.
+	 *
+	 * @return Number of entities added, less than k if there aren't that many.
+	 */
+	public int nearest(int x, int y, int k, List<Entity> out) {
+		if(k <= 0 || placements.isEmpty()) {
+			return 0;
+		}
+		if(bestKeys.length < k) {
+			bestKeys = new long[k];
+		}
+		best.clear();
+		nextStamp();
+		int cx = x >> cellShift;
+		int cy = y >> cellShift;
+		int size = 1 << cellShift;
+		int seen = 0;
+		for(int ring = 0; ; ring++) {
+			if((2L * ring + 1) * (2L * ring + 1) > 4L * cells.size) {
+				// The rings have grown bigger than what is in them, look at the rest directly
+				for(LongMap.Entry<Array<Entity>> cell: cells.entries()) {
+					offer(cell.value, x, y, k);
+				}
+				break;
+			}
+			for(int i = cx - ring; i <= cx + ring; i++) {
+				for(int j = cy - ring; j <= cy + ring; j++) {
+					if(i == cx - ring || i == cx + ring || j == cy - ring || j == cy + ring) {
+						Array<Entity> cell = cells.get(key(i, j));
+						if(cell != null) {
+							seen += offer(cell, x, y, k);
+						}
+					}
+				}
+			}
+			if(seen == placements.size()) {
+				break;
+			}
+			if(best.size() == k) {
+				// Anything not seen yet is in a cell outside this ring
+				long outside = Math.min(Math.min(x - ((cx - ring) << cellShift), ((cx + ring) << cellShift) + size - 1 - x),
+						Math.min(y - ((cy - ring) << cellShift), ((cy + ring) << cellShift) + size - 1 - y)) + 1;
+				if(bestKeys[k - 1] >>> 31 < outside * outside) {
+					break;
+				}
+			}
+		}
+		out.addAll(best);
+		int count = best.size();
+		best.clear();
+		return count;
+	}
+
+	private int query(int x0, int y0, int x1, int y1, int x, int y, long maxDistance2, List<Entity> out) {
+		nextStamp();
+		int count = 0;
+		for(int i = x0 >> cellShift; i <= x1 >> cellShift; i++) {
+			for(int j = y0 >> cellShift; j <= y1 >> cellShift; j++) {
+				Array<Entity> cell = cells.get(key(i, j));
+				if(cell == null) {
+					continue;
+				}
+				for(int e = 0; e < cell.size; e++) {
+					Entity entity = cell.get(e);
+					Placement p = placements.get(entity);
+					if(p.stamp == stamp) {
+						continue;
+					}
+					p.stamp = stamp;
+					boolean inside = maxDistance2 < 0
+							? p.x <= x1 && x0 < p.x + p.width && p.y <= y1 && y0 < p.y + p.height
+							: p.distance2(x, y) <= maxDistance2;
+					if(inside) {
+						out.add(entity);
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Offers the entities in a cell not seen before to the k best, kept sorted by distance and then order.
+	 *
+	 * @return Number of entities seen for the first time.
+	 */
+	private int offer(Array<Entity> cell, int x, int y, int k) {
+		int seen = 0;
+		for(int e = 0; e < cell.size; e++) {
+			Entity entity = cell.get(e);
+			Placement p = placements.get(entity);
+			if(p.stamp == stamp) {
+				continue;
+			}
+			p.stamp = stamp;
+			seen++;
+			long sortKey = p.distance2(x, y) << 31 | p.order;
+			int count = best.size();
+			if(count == k && sortKey >= bestKeys[k - 1]) {
+				continue;
+			}
+			int slot = count == k ? k - 1 : count;
+			if(count < k) {
+				best.add(null);
+			}
+			while(slot > 0 && bestKeys[slot - 1] > sortKey) {
+				bestKeys[slot] = bestKeys[slot - 1];
+				best.set(slot, best.get(slot - 1));
+				slot--;
+			}
+			bestKeys[slot] = sortKey;
+			best.set(slot, entity);
+		}
+		return seen;
+	}
+
+	private void place(Entity entity, Placement p, int x, int y) {
+		p.x = x;
+		p.y = y;
+		p.width = entity.getWidth();
+		p.height = entity.getHeight();
+		for(int i = p.x >> cellShift; i <= (p.x + p.width - 1) >> cellShift; i++) {
+			for(int j = p.y >> cellShift; j <= (p.y + p.height - 1) >> cellShift; j++) {
+				long key = key(i, j);
+				Array<Entity> cell = cells.get(key);
+				if(cell == null) {
+					cell = new Array<Entity>(4);
+					cells.put(key, cell);
+				}
+				// Keep each cell in the order entities were added
+				int slot = cell.size;
+				while(slot > 0 && placements.get(cell.get(slot - 1)).order > p.order) {
+					slot--;
+				}
+				cell.insert(slot, entity);
+			}
+		}
+	}
+
+	private void unplace(Entity entity, Placement p) {
+		for(int i = p.x >> cellShift; i <= (p.x + p.width - 1) >> cellShift; i++) {
+			for(int j = p.y >> cellShift; j <= (p.y + p.height - 1) >> cellShift; j++) {
+				long key = key(i, j);
+				Array<Entity> cell = cells.get(key);
+				cell.removeValue(entity, true);
+				if(cell.size == 0) {
+					cells.remove(key);
+				}
+			}
+		}
+	}
+
+	private void nextStamp() {
+		if(++stamp == 0) {
+			// Wrapped around, so old stamps could match again
+			for(Placement p: placements.values()) {
+				p.stamp = 0;
+			}
+			stamp = 1;
+		}
+	}
+
+	private static long key(int i, int j) {
+		return (long) i << 32 | (j & 0xffffffffL);
+	}
+
+	/**
+	 * Where an entity was put in the cells.
+	 */
+	private static class Placement {
+		final int order;
+		int x;
+		int y;
+		int width;
+		int height;
+		int stamp;
+
+		Placement(int order) {
+			this.order = order;
+		}
+
+		/**
+		 * @return Squared distance from the tile at (x, y) to the nearest tile of the footprint.
+		 */
+		long distance2(int x, int y) {
+			long dx = x < this.x ? this.x - x : x >= this.x + width ? x - (this.x + width - 1) : 0;
+			long dy = y < this.y ? this.y - y : y >= this.y + height ? y - (this.y + height - 1) : 0;
+			return dx * dx + dy * dy;
+		}
+	}
+}
@@ -2,14 +2,20 @@ package com.left.addd.services;
 
 import static com.left.addd.utils.Log.log;
 
+import java.io.StringWriter;
+
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Base64Coder;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.left.addd.AdddGame;
 import com.left.addd.model.GameModel;
+import com.left.addd.model.Recording;
 import com.left.addd.utils.LoadingException;
 
 public class GameSerializer {
@@ -77,7 +83,22 @@ public class GameSerializer {
 		try {
 			FileHandle saveFile = getSaveFileHandle(slot);
 			log("Load", "Loading from " + saveFile.path());
-			String data = saveFile.readString().trim();
+			return read(saveFile.readString());
+		} catch(IllegalArgumentException e) {
+			throw new LoadingException(e.getMessage());
+		} catch(GdxRuntimeException e) {
+			throw new LoadingException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Loads a TemplateModel from the contents of a save file, which doesn't need a running application.
+	 * @param data Json, base64 encoded or not
+	 * @return The saved TemplateModel. Throws exceptions if the data isn't a saved game.
+	 */
+	public GameModel read(String data) throws LoadingException {
+		try {
+			data = data.trim();
 			if(data.matches("^[A-Za-z0-9/+=]+$")) {
 				log("Load", "File is base64 encoded");
 				data = Base64Coder.decodeString(data);
@@ -90,6 +111,80 @@ public class GameSerializer {
 		}
 	}
 
+	/**
+	 * @return Json of the model, as it would be saved in DEVMODE.
+	 */
+	public String write(GameModel gameModel) {
+		return json.prettyPrint(gameModel);
+	}
+
+	/**
+	 * Writes the recording of a session to a file of its own, named after when it was written.
+	 */
+	public void saveRecording(Recording recording) {
+		FileHandle file = Gdx.files.local("data/recording" + TimeUtils.millis() + ".json");
+		log("Save", "Saving recording to " + file.path());
+		file.writeString(writeRecording(recording), false);
+	}
+
+	/**
+	 * @return Json of the recording, the save data it starts from included.
+	 */
+	public String writeRecording(Recording recording) {
+		Json writer = new Json(JsonWriter.OutputType.json);
+		StringWriter out = new StringWriter();
+		writer.setWriter(out);
+		writer.writeObjectStart();
+		writer.writeValue("start", recording.getStart());
+		writer.writeValue("end", recording.getEnd());
+		writer.writeArrayStart("events");
+		for(Recording.Event event: recording.getEvents()) {
+			writer.writeObjectStart();
+			writer.writeValue("tick", event.tick);
+			writer.writeValue("name", event.name);
+			writer.writeValue("arguments", event.arguments);
+			writer.writeObjectEnd();
+		}
+		writer.writeArrayEnd();
+		writer.writeObjectEnd();
+		return out.toString();
+	}
+
+	/**
+	 * Reads a recording written by {@link #writeRecording(Recording)}, which doesn't need a running application.
+	 * Throws exceptions if the data isn't a recording.
+	 */
+	public Recording readRecording(String data) throws LoadingException {
+		try {
+			JsonValue root = new JsonReader().parse(data);
+			JsonValue events = root.get("events");
+			if(events == null) {
+				throw new LoadingException("Not a recording");
+			}
+			Recording recording = new Recording(root.getString("start", null), 0);
+			for(JsonValue event = events.child(); event != null; event = event.next()) {
+				int[] arguments = event.get("arguments").asIntArray();
+				recording.record(event.getLong("tick"), new Recording.Marker(event.getString("name"), arguments));
+			}
+			recording.setEnd(root.getLong("end"));
+			return recording;
+		} catch(IllegalArgumentException e) {
+			throw new LoadingException(e.getMessage());
+		} catch(GdxRuntimeException e) {
+			throw new LoadingException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return A fresh model in the state the recording starts from, to replay it against.
+	 */
+	public GameModel createModel(Recording recording) throws LoadingException {
+		if(recording.getStart() == null) {
+			return new GameModel(15, 15);
+		}
+		return read(recording.getStart());
+	}
+
 	/**
 	 * Test code. Remember to use System.out.println instead of Gdx.app.log
 	 * if testing outside of libGDX
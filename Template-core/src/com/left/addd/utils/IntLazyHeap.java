@@ -0,0 +1,93 @@
+package com.left.addd.utils;
+
+/**
+ * Binary min-heap of int values ordered by a long priority, growing as needed.
+ * Unlike {@link IntMinHeap} a value can be added more than once and nothing is ever removed
+ * early; callers skip outdated entries as they pop them.
+ * This keeps the memory proportional to the entries, not to the range of values.
+ */
+public class IntLazyHeap {
+	private int[] values;
+	private long[] priorities;
+	private int size;
+
+	public IntLazyHeap(int capacity) {
+		this.values = new int[capacity];
+		this.priorities = new long[capacity];
+		this.size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void add(int value, long priority) {
+		if(size == values.length) {
+			int capacity = Math.max(16, size * 2);
+			int[] newValues = new int[capacity];
+			long[] newPriorities = new long[capacity];
+			System.arraycopy(values, 0, newValues, 0, size);
+			System.arraycopy(priorities, 0, newPriorities, 0, size);
+			values = newValues;
+			priorities = newPriorities;
+		}
+		int slot = size++;
+		while(slot > 0) {
+			int parent = (slot - 1) >>> 1;
+			if(priorities[parent] <= priority) {
+				break;
+			}
+			values[slot] = values[parent];
+			priorities[slot] = priorities[parent];
+			slot = parent;
+		}
+		values[slot] = value;
+		priorities[slot] = priority;
+	}
+
+	public int peek() {
+		return values[0];
+	}
+
+	public long peekPriority() {
+		return priorities[0];
+	}
+
+	/**
+	 * Removes and returns the value with the lowest priority.
+	 */
+	public int pop() {
+		int top = values[0];
+		size--;
+		if(size > 0) {
+			int value = values[size];
+			long priority = priorities[size];
+			int slot = 0;
+			int half = size >>> 1;
+			while(slot < half) {
+				int child = 2 * slot + 1;
+				int right = child + 1;
+				if(right < size && priorities[right] < priorities[child]) {
+					child = right;
+				}
+				if(priority <= priorities[child]) {
+					break;
+				}
+				values[slot] = values[child];
+				priorities[slot] = priorities[child];
+				slot = child;
+			}
+			values[slot] = value;
+			priorities[slot] = priority;
+		}
+		return top;
+	}
+}
@@ -0,0 +1,136 @@
+package com.left.addd.utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int values ordered by a long priority.
+ * Values must be in [0, capacity) and each value can be in the heap at most once,
+ * which allows decrease-key without searching.
+ * Nothing is allocated after construction.
+ */
+public class IntMinHeap {
+	private final int[] values;
+	private final long[] priorities;
+	/** Heap slot of each value, or -1 if the value is not in the heap */
+	private final int[] slots;
+	private int size;
+
+	public IntMinHeap(int capacity) {
+		this.values = new int[capacity];
+		this.priorities = new long[capacity];
+		this.slots = new int[capacity];
+		Arrays.fill(slots, -1);
+		this.size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int value) {
+		return slots[value] >= 0;
+	}
+
+	/**
+	 * Adds the value, or lowers its priority if it is already in the heap.
+	 * A higher priority for a value already in the heap is ignored.
+	 */
+	public void add(int value, long priority) {
+		int slot = slots[value];
+		if(slot >= 0) {
+			if(priority < priorities[slot]) {
+				priorities[slot] = priority;
+				siftUp(slot);
+			}
+			return;
+		}
+		slot = size++;
+		values[slot] = value;
+		priorities[slot] = priority;
+		slots[value] = slot;
+		siftUp(slot);
+	}
+
+	public int peek() {
+		return values[0];
+	}
+
+	public long peekPriority() {
+		return priorities[0];
+	}
+
+	/**
+	 * Removes and returns the value with the lowest priority.
+	 */
+	public int pop() {
+		int top = values[0];
+		slots[top] = -1;
+		size--;
+		if(size > 0) {
+			values[0] = values[size];
+			priorities[0] = priorities[size];
+			slots[values[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Empties the heap in O(size).
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			slots[values[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int slot) {
+		int value = values[slot];
+		long priority = priorities[slot];
+		while(slot > 0) {
+			int parent = (slot - 1) >>> 1;
+			if(priorities[parent] <= priority) {
+				break;
+			}
+			move(parent, slot);
+			slot = parent;
+		}
+		place(value, priority, slot);
+	}
+
+	private void siftDown(int slot) {
+		int value = values[slot];
+		long priority = priorities[slot];
+		int half = size >>> 1;
+		while(slot < half) {
+			int child = 2 * slot + 1;
+			int right = child + 1;
+			if(right < size && priorities[right] < priorities[child]) {
+				child = right;
+			}
+			if(priority <= priorities[child]) {
+				break;
+			}
+			move(child, slot);
+			slot = child;
+		}
+		place(value, priority, slot);
+	}
+
+	private void move(int from, int to) {
+		values[to] = values[from];
+		priorities[to] = priorities[from];
+		slots[values[to]] = to;
+	}
+
+	private void place(int value, long priority, int slot) {
+		values[slot] = value;
+		priorities[slot] = priority;
+		slots[value] = slot;
+	}
+}
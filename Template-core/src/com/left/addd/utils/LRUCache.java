@@ -1,54 +1,126 @@
 package com.left.addd.utils;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Least Recently Used Cache
  * implemented using a LinkedHashMap.
+ * Entries count 1 each towards the limit, unless a Weigher gives them a weight of their own,
+ * for example the memory they take up.
  * Source: http://steigert.blogspot.com.br/2012/03/8-libgdx-tutorial-sound-and-music.html
  * Reference: http://stackoverflow.com/questions/224868/easy-simple-to-use-lru-cache-in-java
  */
 public class LRUCache<K, V> {
-	
+
 	public interface CacheEntryRemovedListener<K, V> {
 		void notifyEntryRemoved(K key, V value);
 	}
-	
-	private final int MAX_ENTRIES;
+
+	/**
+	 * Weight of an entry, which mustn't change while the entry is in the cache.
+	 */
+	public interface Weigher<K, V> {
+		int weigh(K key, V value);
+	}
+
+	private final int MAX_WEIGHT;
 	private final Map<K, V> cache;
+	private final Weigher<K, V> weigher;
 	private CacheEntryRemovedListener<K, V> removeListener;
-	
+	private int weight;
+
 	public LRUCache(int max) {
-		MAX_ENTRIES = max;
-		cache = new LinkedHashMap<K, V>(MAX_ENTRIES + 1, 0.75f, true) {
-			private static final long serialVersionUID = 1L;
-			public boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-				if(size() > MAX_ENTRIES) {
-					if(removeListener != null) {
-						removeListener.notifyEntryRemoved(eldest.getKey(), eldest.getValue());
-					}
-					return true;
-				}
-				return false;
-			}
-		};
-	}
-	
+		this(max, null);
+	}
+
+	/**
+	 * @param maxWeight Total weight the entries may add up to
+	 * @param weigher Weighs the entries, or null to count them
+	 */
+	public LRUCache(int maxWeight, Weigher<K, V> weigher) {
+		MAX_WEIGHT = maxWeight;
+		this.weigher = weigher;
+		this.weight = 0;
+		int initialCapacity = weigher == null ? MAX_WEIGHT + 1 : 16;
+		cache = new LinkedHashMap<K, V>(initialCapacity, 0.75f, true);
+	}
+
 	public void put(K key, V value) {
-		cache.put(key, value);
+		V old = cache.put(key, value);
+		if(old != null) {
+			weight -= weigh(key, old);
+		}
+		weight += weigh(key, value);
+		// Least recently used go first
+		Iterator<Map.Entry<K, V>> eldest = cache.entrySet().iterator();
+		while(weight > MAX_WEIGHT && eldest.hasNext()) {
+			Map.Entry<K, V> entry = eldest.next();
+			eldest.remove();
+			removed(entry.getKey(), entry.getValue());
+		}
 	}
-	
+
 	public V get(K key) {
 		return cache.get(key);
 	}
-	
+
+	/**
+	 * Takes an entry out, telling the listener about it.
+	 */
+	public V remove(K key) {
+		V value = cache.remove(key);
+		if(value != null) {
+			removed(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Takes every entry out, telling the listener about each.
+	 */
+	public void clear() {
+		Iterator<Map.Entry<K, V>> entries = cache.entrySet().iterator();
+		while(entries.hasNext()) {
+			Map.Entry<K, V> entry = entries.next();
+			entries.remove();
+			removed(entry.getKey(), entry.getValue());
+		}
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return Total weight of the entries, their number if there is no Weigher.
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	public int getMaxWeight() {
+		return MAX_WEIGHT;
+	}
+
 	public Collection<V> retrieveAll() {
 		return cache.values();
 	}
-	
+
 	public void setEntryRemovedListener(CacheEntryRemovedListener<K, V> removeListener) {
 		this.removeListener = removeListener;
 	}
+
+	private int weigh(K key, V value) {
+		return weigher == null ? 1 : weigher.weigh(key, value);
+	}
+
+	private void removed(K key, V value) {
+		weight -= weigh(key, value);
+		if(removeListener != null) {
+			removeListener.notifyEntryRemoved(key, value);
+		}
+	}
 }
@@ -12,8 +12,15 @@ public class Log {
 	public static void log(String message) {
 		log(TAG_MAIN, message);
 	}
+	/**
+	 * Logs through the application, or to standard out when there is none, such as in a headless run.
+	 */
 	public static void log(String tag, String message) {
-		Gdx.app.log(tag, message);
+		if(Gdx.app != null) {
+			Gdx.app.log(tag, message);
+		} else {
+			System.out.println(tag + ": " + message);
+		}
 	}
 	
 	public static String pCoords(float x, float y) {
@@ -3,7 +3,10 @@ package com.left.addd.view;
 import static com.left.addd.utils.Log.log;
 import static com.left.addd.utils.Log.pCoords;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import com.badlogic.gdx.graphics.Color;
@@ -16,12 +19,16 @@ import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.left.addd.model.Building;
 import com.left.addd.model.NPC;
 import com.left.addd.model.Entity;
-import com.left.addd.model.StateChangedListener;
-import com.left.addd.model.Tile;
+import com.left.addd.model.GameSnapshot;
 import com.left.addd.model.Time;
+import com.left.addd.services.EntitySpatialHash;
 import com.left.addd.utils.Res;
 
-public class EntityView implements StateChangedListener<Entity> {
+/**
+ * Draws the entities of the latest {@link GameSnapshot}, moving them between tiles the way they move in the model.
+ * Only ever reads snapshots, so it doesn't mind the model being updated on another thread.
+ */
+public class EntityView {
 
 	private final TextureAtlas atlas;
 	
@@ -29,10 +36,23 @@ public class EntityView implements StateChangedListener<Entity> {
 	private static final Color highlightColor = new Color(0.7f, 1, 0.7f, 1);
 	
 	private Map<Entity, EntityRenderer> entityMap;
+	/** Where the entities stand in the latest snapshot, to find the ones under the cursor */
+	private final EntitySpatialHash index;
+	/** Counts snapshots, to find the renderers of entities that are gone */
+	private int generation;
+	/** Tiles an entity's image can reach past the tile it stands on, moving included */
+	private int reach;
+	private Entity selectedEntity;
+	private final List<Entity> nearby;
 	
 	public EntityView(TextureAtlas atlas) {
 		this.atlas = atlas;
+		this.index = new EntitySpatialHash();
+		generation = 0;
 		entityMap = new HashMap<Entity, EntityRenderer>();
+		reach = 1;
+		selectedEntity = null;
+		nearby = new ArrayList<Entity>();
 	}
 	
 	public void render(SpriteBatch batch, float delta) {
@@ -43,74 +63,124 @@ public class EntityView implements StateChangedListener<Entity> {
 	}
 	
 	public Entity selectEntityInTarget(float targetX, float targetY) {
-		Entity selectedEntity = null;
-		boolean targetFound = false;
-		for (Entity key: entityMap.keySet()) {
+		int x = (int) Math.floor(targetX);
+		int y = (int) Math.floor(targetY);
+		// Images are drawn up and to the right of where the entity is, which is at most a tile from where it stands
+		nearby.clear();
+		index.queryRect(x - reach, y - reach, x + 1, y + 1, nearby);
+		Entity target = null;
+		for (Entity key: nearby) {
 			EntityRenderer e = entityMap.get(key);
-			if (!targetFound && e.isInRect(targetX, targetY)) {
-				e.setColor(highlightColor);
-				selectedEntity = key;
-				targetFound = true;
-			} else {
-				e.setColor(plainColor);
+			if (e != null && e.isInRect(targetX, targetY)) {
+				target = key;
+				break;
+			}
+		}
+		if (target != selectedEntity) {
+			deselectAllEntities();
+			if (target != null) {
+				entityMap.get(target).setColor(highlightColor);
 			}
+			selectedEntity = target;
 		}
 		return selectedEntity;
 	}
 	
 	public void deselectAllEntities() {
-		for (Entity key: entityMap.keySet()) {
-			EntityRenderer e = entityMap.get(key);
-			e.setColor(plainColor);
+		if (selectedEntity != null) {
+			entityMap.get(selectedEntity).setColor(plainColor);
+			selectedEntity = null;
 		}
 	}
 	
-	@Override
-	public void OnStateChanged(Entity entity) {
-		// TODO Auto-generated method stub
-		if (entity instanceof NPC) {
-			// check if it's starting to move or done moving
-			NPC cEntity = (NPC) entity;
-			Tile current = cEntity.getCurrentTile();
-			Tile next = cEntity.getNextTile();
-			if (current.equals(next)) {
-				// entity is no longer moving
-				//log("Entity " + entity.getMetadata().get("Name") + " no longer moving" + pCoords(current));
-				if (entityMap.containsKey(entity)) {
-					EntityRenderer e = entityMap.get(entity);
-					e.end(current.x, current.y);
-				} else {
-					Image image = new Image(new TextureRegionDrawable(atlas.findRegion(Res.ENTITIES + cEntity.getType().assetName)));
-					EntityRenderer e = new NPCRenderer(image);
-					e.end(current.x, current.y);
-					entityMap.put(entity, e);
+	/**
+	 * Catches up with a new snapshot of the model: starts and ends moves the way the entities did,
+	 * adds renderers for new entities and drops the ones of entities that are gone.
+	 */
+	public void update(GameSnapshot snapshot) {
+		generation++;
+		int width = snapshot.width;
+		for (int i = 0; i < snapshot.getEntityCount(); i++) {
+			Entity entity = snapshot.getEntity(i);
+			int current = snapshot.getCurrentTile(i);
+			int next = snapshot.getNextTile(i);
+			EntityRenderer e = entityMap.get(entity);
+			if (e == null) {
+				e = createRenderer(entity, current % width, current / width);
+				if (e == null) {
+					continue;
 				}
+				addRenderer(entity, e);
+				index.add(entity, current % width, current / width);
+			} else if (e.currentTile == current && e.nextTile == next) {
+				e.generation = generation;
+				e.target = snapshot.getTarget(i);
+				continue;
+			} else {
+				index.update(entity, current % width, current / width);
+			}
+			if (current == next) {
+				// entity is no longer moving
+				e.end(current % width, current / width);
 			} else {
 				// entity is now moving
-				//log("Entity " + entity.getMetadata().get("Name") + " now moving" + pCoords(current));
-				if (entityMap.containsKey(entity)) {
-					EntityRenderer e = entityMap.get(entity);
-					e.start(current.x, current.y, next.x, next.y, Time.getRealTimeFromTicks(cEntity.getMoveDuration()));
-				} else {
-					Image image = new Image(new TextureRegionDrawable(atlas.findRegion(Res.ENTITIES + cEntity.getType().assetName)));
-					EntityRenderer e = new NPCRenderer(image);
-					e.start(current.x, current.y, next.x, next.y, Time.getRealTimeFromTicks(cEntity.getMoveDuration()));
-					entityMap.put(entity, e);
+				e.start(current % width, current / width, next % width, next / width, Time.getRealTimeFromTicks(snapshot.getMoveDuration(i)));
+			}
+			e.currentTile = current;
+			e.nextTile = next;
+			e.generation = generation;
+			e.target = snapshot.getTarget(i);
+		}
+		if (entityMap.size() > snapshot.getEntityCount()) {
+			Iterator<Map.Entry<Entity, EntityRenderer>> it = entityMap.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<Entity, EntityRenderer> entry = it.next();
+				if (entry.getValue().generation != generation) {
+					if (entry.getKey() == selectedEntity) {
+						selectedEntity = null;
+					}
+					index.remove(entry.getKey());
+					it.remove();
 				}
 			}
+		}
+	}
+
+	/**
+	 * @return What the entity was heading for in the latest snapshot, or null.
+	 */
+	public Entity getTarget(Entity entity) {
+		EntityRenderer e = entityMap.get(entity);
+		return e == null ? null : e.target;
+	}
+
+	private EntityRenderer createRenderer(Entity entity, int x, int y) {
+		if (entity instanceof NPC) {
+			NPC cEntity = (NPC) entity;
+			Image image = new Image(new TextureRegionDrawable(atlas.findRegion(Res.ENTITIES + cEntity.getType().assetName)));
+			return new NPCRenderer(image);
 		} else if (entity instanceof Building) {
-			//log ("Building " + entity.getMetadata().get("Name") + " at " + pCoords(entity.getCurrentTile()));
 			Building bEntity = (Building) entity;
-			Tile current = bEntity.getCurrentTile();
 			Image image = new Image(new TextureRegionDrawable(atlas.findRegion(Res.ENTITIES + bEntity.getType().assetName)));
-			BuildingRenderer br = new BuildingRenderer(current.x, current.y, image);
-			entityMap.put(entity, br);
+			return new BuildingRenderer(x, y, image);
 		}
+		return null;
+	}
+	
+	private void addRenderer(Entity entity, EntityRenderer e) {
+		entityMap.put(entity, e);
+		int size = (int) Math.ceil(Math.max(e.image.getPrefWidth(), e.image.getPrefHeight()) / Res.TILE_LENGTH);
+		reach = Math.max(reach, size + 1);
 	}
 	
 	private abstract class EntityRenderer implements TileRenderable {
 		protected Vector2 current;
 		protected Image image;
+		/** Tile ids of the entity in the snapshot this renderer last caught up with */
+		int currentTile;
+		int nextTile;
+		Entity target;
+		int generation;
 		
 		public EntityRenderer(Image image) {
 			this.current = new Vector2();
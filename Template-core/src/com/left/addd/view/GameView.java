@@ -10,7 +10,6 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputProcessor;
@@ -32,24 +31,30 @@ import com.left.addd.view.Panner;
 import com.left.addd.view.PannerDesktop;
 import com.left.addd.view.PannerMobile;
 import com.left.addd.model.Building;
-import com.left.addd.model.Direction;
 import com.left.addd.model.Entity;
 import com.left.addd.model.Network;
-import com.left.addd.model.StateChangedListener;
 import com.left.addd.model.Tile;
 import com.left.addd.view.GameView;
 import com.left.addd.view.PannerAbstract;
 import com.left.addd.view.TileImageType;
 
 /**
- * Manages the drawing of the model to the screen and player controls. Reference:
+ * Manages the drawing of the model to the screen and player controls.
+ * Draws from the snapshots of a {@link Simulation} and hands it the player's edits as commands,
+ * so the model may be updated on another thread. Reference:
  * https://github.com/libgdx/libgdx/tree/master/demos/very-angry-robots/very-angry-robots/src/com/badlydrawngames/veryangryrobots
  */
-public class GameView implements InputProcessor, StateChangedListener<GameModel> {
+public class GameView implements InputProcessor {
 	public static final int TILE_LENGTH = 32;
 
 	private final AdddGame game;
-	private final GameModel gameModel;
+	private final Simulation simulation;
+	/** Serial of the latest snapshot drawn, or -1 before the first frame */
+	private long drawnSerial;
+	/** Number of changes the roads drawn had, see {@link WorldGrid#getWrites()} */
+	private int drawnWrites;
+	private final int width;
+	private final int height;
 	private final TextureAtlas atlas;
 	protected OrthographicCamera viewCamera;
 
@@ -92,14 +97,18 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 	// *** Constructor ****
 	// ********************
 
-	public GameView(AdddGame game, GameModel model, TextureAtlas atlas) {
+	public GameView(AdddGame game, Simulation simulation, TextureAtlas atlas) {
 		this.game = game;
-		this.gameModel = model;
+		this.simulation = simulation;
+		this.drawnSerial = -1;
+		this.drawnWrites = 0;
+		this.width = simulation.getSnapshot().width;
+		this.height = simulation.getSnapshot().height;
 		this.atlas = atlas;
 		this.viewCamera = new OrthographicCamera();
 
 		Vector3 pannerMin = new Vector3((-3) * TILE_LENGTH, (-3) * TILE_LENGTH, 0);
-		Vector3 pannerMax = new Vector3((gameModel.width + 3) * TILE_LENGTH, (gameModel.height + 3)
+		Vector3 pannerMax = new Vector3((width + 3) * TILE_LENGTH, (height + 3)
 				* TILE_LENGTH, 0);
 		switch(Gdx.app.getType()) {
 		case Applet:
@@ -134,17 +143,15 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 			}
 		}
 
-		this.tileImageTypes = new TileImageType[gameModel.width][gameModel.height];
-		updateAllTiles();
-		create();
+		this.tileImageTypes = new TileImageType[width][height];
 	}
 
 	// ********************
 	// **** Internals *****
 	// ********************
 
-	public GameModel getModel() {
-		return gameModel;
+	public Simulation getSimulation() {
+		return simulation;
 	}
 
 	/**
@@ -161,7 +168,7 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 		clickCoordinate.set(touchPoint.x / TILE_LENGTH, touchPoint.y / TILE_LENGTH);
 		int x = (int) clickCoordinate.x;
 		int y = (int) clickCoordinate.y;
-		if(0 <= x && x < gameModel.width && 0 <= y && y < gameModel.height) {
+		if(0 <= x && x < width && 0 <= y && y < height) {
 			clickX = x;
 			clickY = y;
 			return true;
@@ -183,7 +190,7 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 		rightClickCoordinate.set(touchPoint.x / TILE_LENGTH, touchPoint.y / TILE_LENGTH);
 		int x = (int) rightClickCoordinate.x;
 		int y = (int) rightClickCoordinate.y;
-		if(0 <= x && x < gameModel.width && 0 <= y && y < gameModel.height) {
+		if(0 <= x && x < width && 0 <= y && y < height) {
 			rightClickX = x;
 			rightClickY = y;
 			return true;
@@ -205,7 +212,7 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 		hoverCoordinate.set(touchPoint.x / TILE_LENGTH, touchPoint.y / TILE_LENGTH);
 		int x = (int) hoverCoordinate.x;
 		int y = (int) hoverCoordinate.y;
-		if(0 <= x && x < gameModel.width && 0 <= y && y < gameModel.height) {
+		if(0 <= x && x < width && 0 <= y && y < height) {
 			hoverX = x;
 			hoverY = y;
 			return true;
@@ -336,12 +343,12 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 
 	/**
 	 * Tells the GameModel to perform an action at the given Tile coordinate.
+	 * The tiles are drawn changed once a snapshot comes in from after the change.
 	 */
 	private void touchTile() {
 		game.getSound().play(SoundList.CLICK);
 
-		// Update all appropriate tiles
-		updateTile(clickX, clickY);
+		simulation.post(new ToggleRoad(clickX, clickY));
 
 		// TODO insert tile clicking logic here. create functions for Tile and call them here.
 		// ie. tile.interact();
@@ -358,62 +365,58 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 	}
 
 	/**
-	 * Call this to update the Tile View for the given Tile coordinate. Note: only tile.x and tile.y are used.
-	 *
-	 * @param tile Coordinate of Tile to update.
-	 */
-	private void updateTile(int x, int y) {
-		Tile tile = gameModel.getTile(x, y);
-		if(tile.hasNetwork()) {
-			// Update tile and NESW neighbours
-			tile.clearNetwork();
-			setTileImageType(tile);
-		} else {
-			tile.setNetwork(new Network(NetworkType.ROAD));
-			setTileImageType(tile);
-			setTileImageType(tile.getNeighbour(Direction.NORTH));
-			setTileImageType(tile.getNeighbour(Direction.EAST));
-			setTileImageType(tile.getNeighbour(Direction.SOUTH));
-			setTileImageType(tile.getNeighbour(Direction.WEST));
-		}
-	}
-
-	/**
-	 * Update all the tile views.
+	 * Update all the tile views from the roads of a snapshot.
 	 */
-	private void updateAllTiles() {
-		for(int i = 0; i < gameModel.width; i++) {
-			for(int j = 0; j < gameModel.height; j++) {
-				setTileImageType(gameModel.getTile(i, j));
+	private void updateAllTiles(WorldGrid grid) {
+		for(int i = 0; i < width; i++) {
+			for(int j = 0; j < height; j++) {
+				tileImageTypes[i][j] = TileImageType.getImage(grid, i + j * width);
 			}
 		}
 	}
 
 	/**
-	 * Updates the TileImageType for the given Tile coordinate.
-	 *
-	 * @param x
-	 * @param y
+	 * Update the tile views of the chunks whose roads changed since the ones drawn.
 	 */
-	private void setTileImageType(Tile tile) {
-		if(Tile.isDummyTile(tile)) {
-			return;
+	private void updateChangedTiles(WorldGrid grid) {
+		for(int c = 0; c < grid.getChunkCount(); c++) {
+			if(!grid.isChunkWrittenSince(c, drawnWrites)) {
+				continue;
+			}
+			int x0 = (c % grid.getChunksX()) * WorldGrid.CHUNK_SIZE;
+			int y0 = (c / grid.getChunksX()) * WorldGrid.CHUNK_SIZE;
+			int x1 = Math.min(x0 + WorldGrid.CHUNK_SIZE, width);
+			int y1 = Math.min(y0 + WorldGrid.CHUNK_SIZE, height);
+			for(int i = x0; i < x1; i++) {
+				for(int j = y0; j < y1; j++) {
+					tileImageTypes[i][j] = TileImageType.getImage(grid, i + j * width);
+				}
+			}
 		}
-		tileImageTypes[tile.x][tile.y] = TileImageType.getImageFromTile(tile);
 	}
 
 	// ********************
 	// **** Rendering *****
 	// ********************
 
-	public void create() {
-		gameModel.addListener(this);
-	}
-
 	public void render(SpriteBatch batch, float delta) {
 		// Pan camera
 		panKeyboard();
 
+		// Catch up with the model
+		GameSnapshot latest = simulation.getSnapshot();
+		if(latest.getSerial() != drawnSerial) {
+			WorldGrid grid = latest.getGrid();
+			if(drawnSerial < 0) {
+				updateAllTiles(grid);
+			} else if(grid.getWrites() != drawnWrites) {
+				updateChangedTiles(grid);
+			}
+			drawnWrites = grid.getWrites();
+			entityView.update(latest);
+			drawnSerial = latest.getSerial();
+		}
+
 		batch.setProjectionMatrix(panner.getCamera().combined);
 		batch.begin();
 		renderTiles(batch, delta);
@@ -428,8 +431,8 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 	}
 
 	private void renderTiles(SpriteBatch batch, float delta) {
-		for(int i = 0; i < gameModel.width; i++) {
-			for(int j = 0; j < gameModel.height; j++) {
+		for(int i = 0; i < width; i++) {
+			for(int j = 0; j < height; j++) {
 				Image image = tileImageCache.get(tileImageTypes[i][j]);
 				if(image != null) {
 					image.setPosition(i * GameView.TILE_LENGTH, j * GameView.TILE_LENGTH);
@@ -442,9 +445,8 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 	private void renderHover(SpriteBatch batch, float delta) {
 		if(isHovering) {
 			Image image;
-			Tile tile = gameModel.getTile(hoverX, hoverY);
-			int x = tile.x;
-			int y = tile.y;
+			int x = hoverX;
+			int y = hoverY;
 			image = tileImageCache.get(tileImageTypes[x][y]);
 			if(image != null) {
 				image.setPosition(x * GameView.TILE_LENGTH, y * GameView.TILE_LENGTH);
@@ -466,15 +468,19 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 		float lineHeight = 16;
 		Entity te = tooltipEntity;
 		if (te != null) {
-			Set<String> keys = te.getMetadata().keySet();
+			MetadataStore metadata = te.getMetadata();
 			int lineCount = 0;
-			for (String s : keys) {
-				String metadata = s + ": "+te.getMetadata().get(s).toString();
-				font.draw(batch, metadata , tooltip.x+tooltipOffset, tooltip.y+tooltipOffset+lineHeight*lineCount);
+			for (int key = 0; key < metadata.getKeyCount(); key++) {
+				if (!metadata.has(te.getId(), key)) {
+					continue;
+				}
+				String line = metadata.getKeyName(key) + ": " + metadata.get(te.getId(), key);
+				font.draw(batch, line , tooltip.x+tooltipOffset, tooltip.y+tooltipOffset+lineHeight*lineCount);
 				lineCount++;
 			}
-			if(te.getTargetEntity() != null)
-				font.draw(batch, "Target: " + te.getTargetEntity().getMetadata().get("Name"), tooltip.x+tooltipOffset, tooltip.y+tooltipOffset+lineHeight*lineCount);
+			Entity target = entityView.getTarget(te);
+			if(target != null)
+				font.draw(batch, "Target: " + target.getMetadataString(MetadataStore.NAME), tooltip.x+tooltipOffset, tooltip.y+tooltipOffset+lineHeight*lineCount);
 			else {
 				font.draw(batch, "No target." , tooltip.x+tooltipOffset, tooltip.y+tooltipOffset+lineHeight*lineCount);
 			}
@@ -490,12 +496,4 @@ public class GameView implements InputProcessor, StateChangedListener<GameModel>
 		viewCamera.position.set(0, 0, 0);
 		viewCamera.update();
 	}
-
-	public void OnStateChanged(GameModel gameModel) {
-		log("GameView", "GameModel state changed");
-		final List<Entity> entities = gameModel.getEntities();
-		for(Entity e: entities) {
-			e.addStateChangedListener(entityView);
-		}
-	}
 }
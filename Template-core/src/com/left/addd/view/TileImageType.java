@@ -1,8 +1,6 @@
 package com.left.addd.view;
 
-import com.left.addd.model.Direction;
-import com.left.addd.model.Network;
-import com.left.addd.model.Tile;
+import com.left.addd.model.WorldGrid;
 import com.left.addd.utils.Res;
 
 /**
@@ -32,6 +30,15 @@ public enum TileImageType {
 	ROAD_TW("road-tw"),
 	ROAD_X("road-x");
 	
+	/** Road image for each connection mask, indexed by Direction bits */
+	private static final TileImageType[] ROADS = {
+		ROAD_H, // isolated road piece
+		ROAD_N, ROAD_E, ROAD_NE,
+		ROAD_S, ROAD_V, ROAD_SE, ROAD_TE,
+		ROAD_W, ROAD_NW, ROAD_H, ROAD_TN,
+		ROAD_SW, ROAD_TW, ROAD_TS, ROAD_X
+	};
+
 	private final String fileName;
 	private TileImageType(String fileName) {
 		this.fileName = fileName;
@@ -41,68 +48,17 @@ public enum TileImageType {
 	}
 	
 	/**
-	 * Returns the appropriate TileImageType given the Tile.
-	 * @param tile legitimate tile
+	 * Returns the appropriate TileImageType for a tile of a grid, such as the copy in a snapshot.
+	 * @param tile Tile id
 	 */
-	public static TileImageType getImageFromTile(Tile tile) {
-		if(tile.hasNetwork()) {
-			Network network = tile.getNetwork();
-			// Check neighbours
-			boolean n = network.getNeighbour(Direction.NORTH) != null;
-			boolean e = network.getNeighbour(Direction.EAST) != null;
-			boolean s = network.getNeighbour(Direction.SOUTH) != null;
-			boolean w = network.getNeighbour(Direction.WEST) != null;
-			
-			// Update self
-			switch(network.type) {
-			case ROAD:
-				if(n && e && s && w) {
-					return TileImageType.ROAD_X;
-				} else if(n && s) {
-					if(e) {
-						return TileImageType.ROAD_TE;
-					} else if(w) {
-						return TileImageType.ROAD_TW;
-					} else {
-						return TileImageType.ROAD_V;
-					}
-				} else if(e && w) {
-					if(n) {
-						return TileImageType.ROAD_TN;
-					} else if(s) {
-						return TileImageType.ROAD_TS;
-					} else {
-						return TileImageType.ROAD_H;
-					}
-				} else if(n) {
-					if(e) {
-						return TileImageType.ROAD_NE;
-					} else if(w) {
-						return TileImageType.ROAD_NW;
-					} else {
-						return TileImageType.ROAD_N;
-					}
-				} else if(s) {
-					if(e) {
-						return TileImageType.ROAD_SE;
-					} else if(w) {
-						return TileImageType.ROAD_SW;
-					} else {
-						return TileImageType.ROAD_S;
-					}
-				} else if(e) {
-					return TileImageType.ROAD_E;
-				} else if(w) {
-					return TileImageType.ROAD_W;
-				} else {
-					// isolated road piece
-					return TileImageType.ROAD_H;
-				}
-			default:
-				return TileImageType.NONE;
-			}
-		} else {
+	public static TileImageType getImage(WorldGrid grid, int tile) {
+		switch(grid.getType(tile)) {
+		case NONE:
 			return TileImageType.BLANK;
+		case ROAD:
+			return ROADS[grid.getLinks(tile)];
+		default:
+			return TileImageType.NONE;
 		}
 	}
-}
\ No newline at end of file
+}
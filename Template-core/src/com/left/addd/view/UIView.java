@@ -18,7 +18,9 @@ import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import com.left.addd.AdddGame;
 import com.left.addd.AdddGame.Screens;
-import com.left.addd.model.Time;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.GameSnapshot;
+import com.left.addd.model.Recording;
 import com.left.addd.services.SoundManager.SoundList;
 import com.left.addd.utils.DefaultButtonListener;
 import com.left.addd.utils.Res;
@@ -181,7 +183,23 @@ public class UIView implements Disposable {
 					@Override
 					public void pressed(InputEvent event, float x, float y, int pointer, int button) {
 						game.getSound().play(SoundList.CLICK);
-						game.getSaver().save(gameView.getModel(), saveSlot);
+						// Saved between updates, on the thread that updates the model
+						gameView.getSimulation().post(new Recording.Replayable() {
+							@Override
+							public void run(GameModel model) {
+								game.getSaver().save(model, saveSlot);
+							}
+
+							@Override
+							public String getName() {
+								return Recording.SAVE;
+							}
+
+							@Override
+							public int[] getArguments() {
+								return new int[] { saveSlot };
+							}
+						});
 						UIView.this.hideSaveMenu();
 						UIView.this.setState(State.RUNNING);
 					}
@@ -369,6 +387,10 @@ public class UIView implements Disposable {
 	}
 
 	private void setSpeed(Speed speed) {
+		if(speed != this.speed) {
+			// Doesn't change the model, only shows up in recordings
+			gameView.getSimulation().post(new Recording.Marker(Recording.SPEED, speed.ordinal()));
+		}
 		setState(state, speed);
 	}
 
@@ -453,9 +475,9 @@ public class UIView implements Disposable {
 	 */
 	public void render(float delta) {
 		// Get game info
-		Time time = gameView.getModel().getTime();
-		long hour = time.getHour();
-		long day = time.getDay();
+		GameSnapshot snapshot = gameView.getSimulation().getSnapshot();
+		long hour = snapshot.getHour();
+		long day = snapshot.getDay();
 		date.setText("Day " + day + ", " + hour + ":00");
 		
 		// Update
@@ -3,14 +3,40 @@ package com.left.addd.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.left.addd.AdddGame;
+import com.left.addd.model.Simulation;
+import com.left.addd.model.SynchronousSimulation;
+import com.left.addd.services.EntityPlanner;
 
 public class DesktopLauncher {
+	/** Updates the game on a thread of its own rather than the render thread */
+	private static final String SIMULATION_THREAD = "--simulation-thread";
+	/** Plans the entities arriving on a tick on every core */
+	private static final String PARALLEL_ENTITIES = "--parallel-entities";
+	/** Records every game session to data/, to be played again with the ReplayRunner */
+	private static final String RECORD = "--record";
+
 	public static void main (String[] arg) {
+		boolean simulationThread = false;
+		boolean parallelEntities = false;
+		boolean record = false;
+		for(String a: arg) {
+			if(SIMULATION_THREAD.equals(a)) {
+				simulationThread = true;
+			} else if(PARALLEL_ENTITIES.equals(a)) {
+				parallelEntities = true;
+			} else if(RECORD.equals(a)) {
+				record = true;
+			}
+		}
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
 		config.title = "ADD Daycare";
 		config.width = 800;
 		config.height = 600;
 		config.resizable = true;
-		new LwjglApplication(new AdddGame(), config);
+		Simulation.Factory simulations = simulationThread ? new ThreadedSimulation.Factory() : new SynchronousSimulation.Factory();
+		EntityPlanner.Factory entityPlanners = parallelEntities ? new ThreadedEntityPlanner.Factory() : null;
+		AdddGame game = new AdddGame(new ThreadedPathSolver.Factory(), simulations, entityPlanners);
+		game.setRecording(record);
+		new LwjglApplication(game, config);
 	}
 }
@@ -0,0 +1,131 @@
+package com.left.addd.desktop;
+
+import java.util.List;
+import java.util.Random;
+
+import com.left.addd.model.Entity;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.NPC;
+import com.left.addd.model.Time;
+import com.left.addd.services.EntityPlanner;
+
+/**
+ * Checks that planning the entities on threads doesn't change the game: runs the same streets
+ * as the {@link HeadlessRunner} twice side by side, once updating the entities one after the other
+ * and once planned on a {@link ThreadedEntityPlanner}, and compares every entity after every tick.
+ * Some of the people chase each other rather than head for buildings, so plans also go stale.
+ * Also says how long planning took on the threads, which is all that they speed up.
+ * The defaults finish in seconds; the game sizes this is for, like 1024 50000, take minutes.
+ *
+ * Run with: EntityPlannerCheck [ticks] [size] [npcs] [threads] [seed]
+ */
+public class EntityPlannerCheck {
+	/** One person in this many chases another */
+	private static final int CHASERS = 4;
+
+	public static void main(String[] arg) {
+		int ticks = arg.length > 0 ? Integer.parseInt(arg[0]) : 300;
+		int size = arg.length > 1 ? Integer.parseInt(arg[1]) : 128;
+		int npcs = arg.length > 2 ? Integer.parseInt(arg[2]) : 2000;
+		int threads = arg.length > 3 ? Integer.parseInt(arg[3]) : Runtime.getRuntime().availableProcessors();
+		long seed = arg.length > 4 ? Long.parseLong(arg[4]) : 2015;
+
+		GameModel serial = create(size, npcs, seed);
+		GameModel parallel = create(size, npcs, seed);
+		final TimedPlanner planner = new TimedPlanner(new ThreadedEntityPlanner(threads));
+		parallel.setEntityPlanner(new EntityPlanner.Factory() {
+			@Override
+			public EntityPlanner create() {
+				return planner;
+			}
+		});
+		System.out.println(serial.getEntities().size() + " entities on " + size + "x" + size + ", "
+				+ threads + " threads, " + ticks + " ticks");
+
+		float tick = Time.getRealTimeFromTicks(1);
+		long serialTime = 0;
+		long parallelTime = 0;
+		int mismatch = -1;
+		for(int i = 1; i <= ticks && mismatch < 0; i++) {
+			long begin = System.nanoTime();
+			serial.update(tick);
+			long middle = System.nanoTime();
+			parallel.update(tick);
+			parallelTime += System.nanoTime() - middle;
+			serialTime += middle - begin;
+			mismatch = compare(serial.getEntities(), parallel.getEntities());
+			if(mismatch >= 0) {
+				System.out.println("Entity " + mismatch + " differs after tick " + i);
+			}
+		}
+		serial.dispose();
+		parallel.dispose();
+		System.out.println((mismatch < 0 ? "Identical" : "Different") + ", " + (serialTime / 1000000)
+				+ " ms one after the other, " + (parallelTime / 1000000) + " ms planned on threads, "
+				+ (planner.time / 1000000) + " ms of it planning " + planner.planned + " arrivals");
+		if(mismatch >= 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Adds up how long planning took.
+	 */
+	private static class TimedPlanner implements EntityPlanner {
+		private final EntityPlanner planner;
+		private long time;
+		private long planned;
+
+		public TimedPlanner(EntityPlanner planner) {
+			this.planner = planner;
+			this.time = 0;
+			this.planned = 0;
+		}
+
+		@Override
+		public void plan(List<Entity> entities) {
+			long begin = System.nanoTime();
+			planner.plan(entities);
+			time += System.nanoTime() - begin;
+			planned += entities.size();
+		}
+
+		@Override
+		public void dispose() {
+			planner.dispose();
+		}
+	}
+
+	private static GameModel create(int size, int npcs, long seed) {
+		Random random = new Random(seed);
+		GameModel model = HeadlessRunner.createStreets(size, npcs, random);
+		List<Entity> entities = model.getEntities();
+		for(int i = 0; i < entities.size(); i++) {
+			Entity e = entities.get(i);
+			if(e instanceof NPC && i % CHASERS == 0) {
+				e.setTargetEntity(entities.get(entities.size() - 1 - random.nextInt(npcs)));
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * @return Index of the first entity that isn't on the same tiles with a target on the same tile, or -1.
+	 */
+	private static int compare(List<Entity> a, List<Entity> b) {
+		for(int i = 0; i < a.size(); i++) {
+			Entity x = a.get(i);
+			Entity y = b.get(i);
+			if(x.getCurrentTileId() != y.getCurrentTileId() || x.getNextTileId() != y.getNextTileId()
+					|| x.getMoveProgress() != y.getMoveProgress()
+					|| tileOf(x.getTargetEntity()) != tileOf(y.getTargetEntity())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int tileOf(Entity e) {
+		return e == null ? -1 : e.getCurrentTileId();
+	}
+}
@@ -0,0 +1,189 @@
+package com.left.addd.desktop;
+
+import java.util.Arrays;
+
+import com.left.addd.model.Direction;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.pathfinding.Path;
+import com.left.addd.model.pathfinding.RoadGraph;
+import com.left.addd.utils.IntMinHeap;
+
+/**
+ * A* search over the road tiles of a GameModel, one tile at a time.
+ * Entities path over the contracted {@link RoadGraph} instead; this is the plain search
+ * that the {@link PathfindingBenchmark} checks the graph's route lengths against.
+ * It keeps a few ints for every tile of the map, which is fine for a check but not for the game.
+ * Tiles are identified by their id (x + y * width). All the search state lives in
+ * primitive arrays that are allocated once per world and reused by every search;
+ * a generation stamp marks which entries belong to the current search,
+ * so nothing has to be cleared or allocated between searches.
+ */
+public class GridSearch {
+	private final GameModel gameModel;
+	private final int width;
+	private final int height;
+
+	/** Steps taken from the start to reach each tile */
+	private final int[] cost;
+	/** Tile we came from to reach each tile */
+	private final int[] parent;
+	/** Generation in which cost and parent were last written */
+	private final int[] seen;
+	/** Generation in which the tile was last expanded */
+	private final int[] closed;
+	private final IntMinHeap open;
+	private int generation;
+
+	/** Number of tiles expanded by the last search */
+	private int expanded;
+
+	public GridSearch(GameModel gameModel) {
+		this.gameModel = gameModel;
+		this.width = gameModel.width;
+		this.height = gameModel.height;
+		int size = width * height;
+		this.cost = new int[size];
+		this.parent = new int[size];
+		this.seen = new int[size];
+		this.closed = new int[size];
+		this.open = new IntMinHeap(size);
+		this.generation = 0;
+	}
+
+	public int getExpandedCount() {
+		return expanded;
+	}
+
+	/**
+	 * Finds a shortest path from start to goal. Only road tiles can be walked on,
+	 * but the start tile itself doesn't have to be a road.
+	 *
+	 * @param start Tile id to search from
+	 * @param goal Tile id to search to
+	 * @param out Receives the route, stamped with the current network version.
+	 *        It has no steps when start == goal or when no path exists.
+	 * @return true if goal can be reached.
+	 */
+	public boolean findPath(int start, int goal, Path out) {
+		int version = gameModel.getNetworkVersion();
+		expanded = 0;
+		if(start == goal) {
+			out.reset(start, goal, version, 0, true);
+			return true;
+		}
+		int goalX = goal % width;
+		int goalY = goal / width;
+		if(!isRoad(goalX, goalY)) {
+			out.reset(start, goal, version, 0, false);
+			return false;
+		}
+
+		nextGeneration();
+		open.clear();
+		cost[start] = 0;
+		parent[start] = -1;
+		seen[start] = generation;
+		open.add(start, priority(0, heuristic(start % width, start / width, goalX, goalY)));
+
+		while(!open.isEmpty()) {
+			int current = open.pop();
+			if(current == goal) {
+				buildPath(start, goal, version, out);
+				return true;
+			}
+			closed[current] = generation;
+			expanded++;
+
+			int x = current % width;
+			int y = current / width;
+			int steps = cost[current] + 1;
+			// Same order as Direction: NORTH, EAST, SOUTH, WEST
+			if(y + 1 < height) {
+				relax(current, current + width, x, y + 1, steps, goalX, goalY);
+			}
+			if(x + 1 < width) {
+				relax(current, current + 1, x + 1, y, steps, goalX, goalY);
+			}
+			if(y > 0) {
+				relax(current, current - width, x, y - 1, steps, goalX, goalY);
+			}
+			if(x > 0) {
+				relax(current, current - 1, x - 1, y, steps, goalX, goalY);
+			}
+		}
+		out.reset(start, goal, version, 0, false);
+		return false;
+	}
+
+	private void relax(int from, int to, int x, int y, int steps, int goalX, int goalY) {
+		if(closed[to] == generation || !isRoad(x, y)) {
+			return;
+		}
+		if(seen[to] == generation && cost[to] <= steps) {
+			return;
+		}
+		cost[to] = steps;
+		parent[to] = from;
+		seen[to] = generation;
+		open.add(to, priority(steps, heuristic(x, y, goalX, goalY)));
+	}
+
+	private void buildPath(int start, int goal, int version, Path out) {
+		int length = cost[goal];
+		out.reset(start, goal, version, length, true);
+		int id = goal;
+		for(int i = length - 1; i >= 0; i--) {
+			int from = parent[id];
+			out.setStep(i, direction(from, id));
+			id = from;
+		}
+	}
+
+	/**
+	 * @return Direction ordinal of the step between two adjacent tiles.
+	 */
+	private int direction(int from, int to) {
+		int delta = to - from;
+		if(delta == width) {
+			return Direction.NORTH.ordinal();
+		} else if(delta == 1) {
+			return Direction.EAST.ordinal();
+		} else if(delta == -width) {
+			return Direction.SOUTH.ordinal();
+		} else {
+			return Direction.WEST.ordinal();
+		}
+	}
+
+	private boolean isRoad(int x, int y) {
+		return 0 <= x && x < gameModel.width && 0 <= y && y < gameModel.height
+				&& gameModel.getGrid().isRoad(x + y * gameModel.width);
+	}
+
+	private void nextGeneration() {
+		if(generation == Integer.MAX_VALUE) {
+			// Stamps would wrap around, start over with clean arrays
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	/**
+	 * Manhattan distance, which never overestimates on a 4-connected grid.
+	 */
+	private static int heuristic(int x, int y, int goalX, int goalY) {
+		int dx = x - goalX;
+		int dy = y - goalY;
+		return (dx < 0 ? -dx : dx) + (dy < 0 ? -dy : dy);
+	}
+
+	/**
+	 * Orders by estimated total length, then prefers tiles closer to the goal.
+	 * Two tiles only compare equal when both values are equal.
+	 */
+	private static long priority(int steps, int estimate) {
+		return ((long) (steps + estimate) << 32) | estimate;
+	}
+}
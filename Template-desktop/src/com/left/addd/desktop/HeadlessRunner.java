@@ -0,0 +1,182 @@
+package com.left.addd.desktop;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.left.addd.model.Building;
+import com.left.addd.model.Entity;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.NPC;
+import com.left.addd.model.Network;
+import com.left.addd.model.NetworkType;
+import com.left.addd.model.Tile;
+import com.left.addd.model.Time;
+import com.left.addd.model.WorldGrid;
+import com.left.addd.model.pathfinding.FlowFieldCache;
+import com.left.addd.services.GameSerializer;
+import com.left.addd.utils.LoadingException;
+
+/**
+ * Runs a game as fast as it goes, without a window or a libGDX application, and reports
+ * how many ticks a second it managed and what the game looked like at the end.
+ * For soak tests and profiling on machines without a display.
+ * The same scenario and seed always end in the same state, so the checksums of two runs can be compared.
+ *
+ * Run with: HeadlessRunner [ticks] [scenario] [size] [npcs] [seed] [threads]
+ * where scenario is "test" for the test map, "streets" for a city grid of size by size tiles
+ * with npcs people going between buildings, or the path of a save file,
+ * and threads is how many threads plan the entities, 0 to update them one after the other.
+ */
+public class HeadlessRunner {
+	private static final int BLOCK = 8;
+	/** As many as the flow field cache keeps, so people don't keep evicting each other's fields */
+	private static final int BUILDINGS = FlowFieldCache.DEFAULT_CAPACITY;
+	/** Progress is reported this many times over a run */
+	private static final int REPORTS = 10;
+
+	public static void main(String[] arg) throws IOException, LoadingException {
+		int ticks = arg.length > 0 ? Integer.parseInt(arg[0]) : 10000;
+		String scenario = arg.length > 1 ? arg[1] : "streets";
+		int size = arg.length > 2 ? Integer.parseInt(arg[2]) : 256;
+		int npcs = arg.length > 3 ? Integer.parseInt(arg[3]) : 1000;
+		long seed = arg.length > 4 ? Long.parseLong(arg[4]) : 2015;
+		int threads = arg.length > 5 ? Integer.parseInt(arg[5]) : 0;
+
+		long begin = System.nanoTime();
+		GameModel model;
+		if("test".equals(scenario)) {
+			model = new GameModel(15, 15);
+		} else if("streets".equals(scenario)) {
+			model = createStreets(size, npcs, new Random(seed));
+		} else {
+			model = new GameSerializer().read(readFile(new File(scenario)));
+		}
+		if(threads > 0) {
+			model.setEntityPlanner(new ThreadedEntityPlanner.Factory(threads));
+		}
+		long loading = System.nanoTime() - begin;
+		System.out.println("Loaded " + scenario + ", " + model.width + "x" + model.height + ", "
+				+ model.getEntities().size() + " entities, in " + (loading / 1000000) + " ms"
+				+ (threads > 0 ? ", planned on " + threads + " threads" : ""));
+
+		float tick = Time.getRealTimeFromTicks(1);
+		int every = Math.max(1, ticks / REPORTS);
+		begin = System.nanoTime();
+		long last = begin;
+		for(int i = 1; i <= ticks; i++) {
+			model.update(tick);
+			if(i % every == 0 && i < ticks) {
+				long now = System.nanoTime();
+				System.out.println("  " + i + " ticks, " + rate(every, now - last) + " ticks/s");
+				last = now;
+			}
+		}
+		long running = System.nanoTime() - begin;
+		model.dispose();
+
+		System.out.println(ticks + " ticks in " + (running / 1000000) + " ms, " + rate(ticks, running) + " ticks/s");
+		report(model);
+	}
+
+	/**
+	 * @return Hash of where every entity is and where it is moving to.
+	 */
+	static long checksum(GameModel model) {
+		long checksum = 17;
+		for(Entity e: model.getEntities()) {
+			checksum = checksum * 31 + e.getCurrentTileId();
+			checksum = checksum * 31 + e.getNextTileId();
+		}
+		return checksum;
+	}
+
+	static void report(GameModel model) {
+		int moving = 0;
+		int targeted = 0;
+		for(Entity e: model.getEntities()) {
+			if(e.getCurrentTileId() != e.getNextTileId()) {
+				moving++;
+			}
+			if(e.getTargetEntity() != null) {
+				targeted++;
+			}
+		}
+		int roads = 0;
+		WorldGrid grid = model.getGrid();
+		for(int tile = grid.firstNetwork(); tile >= 0; tile = grid.nextNetwork(tile)) {
+			roads++;
+		}
+		System.out.println("Day " + model.getTime().getDay() + ", " + model.getTime().getHour() + ":00, "
+				+ model.getEntities().size() + " entities, " + moving + " moving, " + targeted + " with a target, "
+				+ roads + " road tiles, " + model.getScheduler().size() + " tile tasks, "
+				+ model.getPathFinder().getRequests().getPendingCount() + " paths pending, "
+				+ model.getTime().getDroppedTicks() + " ticks dropped");
+		System.out.println("Checksum " + Long.toHexString(checksum(model)));
+	}
+
+	static String rate(int ticks, long nanos) {
+		return String.valueOf(Math.round(ticks * 1e9 / Math.max(1, nanos)));
+	}
+
+	/**
+	 * Lays a street every BLOCK tiles in both directions, puts BUILDINGS buildings on random crossings
+	 * and sends the people to a random building once they come by another.
+	 */
+	static GameModel createStreets(int size, int npcs, Random random) {
+		GameModel model = new GameModel(size, size, 0);
+		for(int x = 0; x < size; x++) {
+			for(int y = 0; y < size; y++) {
+				if(x % BLOCK == 0 || y % BLOCK == 0) {
+					model.getTile(x, y).setNetwork(new Network(NetworkType.ROAD));
+				}
+			}
+		}
+		Building.Type[] types = { Building.Type.HOUSE, Building.Type.SCHOOL, Building.Type.LIBRARY };
+		List<Building> buildings = new ArrayList<Building>();
+		int crossings = (size + BLOCK - 1) / BLOCK;
+		for(int i = 0; i < BUILDINGS; i++) {
+			Tile tile = model.getTile(random.nextInt(crossings) * BLOCK, random.nextInt(crossings) * BLOCK);
+			Building building = new Building(types[random.nextInt(types.length)], tile);
+			building.addMetadata("Name", "Building " + i);
+			buildings.add(building);
+			model.getEntityManager().addEntity(building);
+		}
+		for(int i = 0; i < npcs; i++) {
+			NPC npc = new NPC(NPC.Type.STUDENT, randomRoad(model, random));
+			npc.addMetadata("Name", "Student " + i);
+			npc.addObjective(buildings.get(random.nextInt(buildings.size())), buildings.get(random.nextInt(buildings.size())));
+			model.getEntityManager().addEntity(npc);
+		}
+		return model;
+	}
+
+	private static Tile randomRoad(GameModel model, Random random) {
+		while(true) {
+			Tile tile = model.getTile(random.nextInt(model.width), random.nextInt(model.height));
+			if(tile.hasNetwork()) {
+				return tile;
+			}
+		}
+	}
+
+	static String readFile(File file) throws IOException {
+		StringBuilder data = new StringBuilder();
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			char[] buffer = new char[8192];
+			int read;
+			while((read = reader.read(buffer)) > 0) {
+				data.append(buffer, 0, read);
+			}
+		} finally {
+			reader.close();
+		}
+		return data.toString();
+	}
+}
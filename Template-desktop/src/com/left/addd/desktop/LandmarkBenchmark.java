@@ -0,0 +1,152 @@
+package com.left.addd.desktop;
+
+import java.util.Random;
+
+import com.left.addd.model.GameModel;
+import com.left.addd.model.Network;
+import com.left.addd.model.NetworkType;
+import com.left.addd.model.Tile;
+import com.left.addd.model.pathfinding.Landmarks;
+import com.left.addd.model.pathfinding.Path;
+import com.left.addd.model.pathfinding.PathFinder;
+
+/**
+ * Measures how many junctions long routes expand with and without landmarks,
+ * on a city grid and on a maze of winding roads with a few shortcuts.
+ * Every route is checked to come out the same length either way.
+ *
+ * Run with: LandmarkBenchmark [size] [routes] [seed]
+ */
+public class LandmarkBenchmark {
+	private static final int BLOCK = 8;
+	private static final int[] COUNTS = { 0, 4, 8, 16 };
+
+	public static void main(String[] arg) {
+		int size = arg.length > 0 ? Integer.parseInt(arg[0]) : 1024;
+		int routes = arg.length > 1 ? Integer.parseInt(arg[1]) : 500;
+		long seed = arg.length > 2 ? Long.parseLong(arg[2]) : 2015;
+
+		GameModel streets = new GameModel(size, size, 0);
+		layStreets(streets, new Random(seed));
+		run("Streets", streets, routes, new Random(seed));
+
+		GameModel maze = new GameModel(size, size, 0);
+		digMaze(maze, new Random(seed));
+		run("Maze", maze, routes, new Random(seed));
+	}
+
+	private static void run(String name, GameModel model, int routes, Random random) {
+		PathFinder pathFinder = model.getPathFinder();
+		int[] starts = new int[routes];
+		int[] goals = new int[routes];
+		for(int i = 0; i < routes; i++) {
+			starts[i] = randomRoad(model, random);
+			goals[i] = randomRoad(model, random);
+		}
+		int[] lengths = new int[routes];
+		Path path = new Path();
+		Landmarks landmarks = pathFinder.getRoadGraph().getLandmarks();
+		landmarks.setNodesPerUpdate(0);
+
+		System.out.println(name + " " + model.width + "x" + model.height + ", "
+				+ pathFinder.getRoadGraph().getNodeCount() + " junctions, " + routes + " routes");
+		for(int count: COUNTS) {
+			pathFinder.setLandmarkCount(count);
+			long begin = System.nanoTime();
+			pathFinder.update();
+			long tables = System.nanoTime() - begin;
+
+			long expanded = 0;
+			int mismatches = 0;
+			begin = System.nanoTime();
+			for(int i = 0; i < routes; i++) {
+				pathFinder.findPath(starts[i], goals[i], path);
+				expanded += pathFinder.getRoadGraph().getExpandedCount();
+				if(count == 0) {
+					lengths[i] = path.getLength();
+				} else if(path.getLength() != lengths[i]) {
+					mismatches++;
+				}
+			}
+			long searches = System.nanoTime() - begin;
+			System.out.println("  " + count + " landmarks: " + expanded + " junctions expanded, "
+					+ (searches / 1000000) + " ms searching, " + (tables / 1000000) + " ms for tables, "
+					+ mismatches + " length mismatches");
+		}
+	}
+
+	/**
+	 * Lays a street every BLOCK tiles in both directions, with a few gaps so not every block is a ring.
+	 */
+	private static void layStreets(GameModel model, Random random) {
+		for(int x = 0; x < model.width; x++) {
+			for(int y = 0; y < model.height; y++) {
+				if((x % BLOCK == 0 || y % BLOCK == 0) && random.nextInt(40) != 0) {
+					model.getTile(x, y).setNetwork(new Network(NetworkType.ROAD));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Digs a maze through the tiles with even coordinates, then knocks through one wall in fifty
+	 * so there is more than one way between most places.
+	 */
+	private static void digMaze(GameModel model, Random random) {
+		int cellsX = (model.width + 1) / 2;
+		int cellsY = (model.height + 1) / 2;
+		boolean[] visited = new boolean[cellsX * cellsY];
+		int[] stack = new int[cellsX * cellsY];
+		int[] options = new int[4];
+		int top = 0;
+		stack[top++] = 0;
+		visited[0] = true;
+		model.getTile(0, 0).setNetwork(new Network(NetworkType.ROAD));
+		while(top > 0) {
+			int cell = stack[top - 1];
+			int x = cell % cellsX;
+			int y = cell / cellsX;
+			int count = 0;
+			if(y + 1 < cellsY && !visited[cell + cellsX]) {
+				options[count++] = cell + cellsX;
+			}
+			if(x + 1 < cellsX && !visited[cell + 1]) {
+				options[count++] = cell + 1;
+			}
+			if(y > 0 && !visited[cell - cellsX]) {
+				options[count++] = cell - cellsX;
+			}
+			if(x > 0 && !visited[cell - 1]) {
+				options[count++] = cell - 1;
+			}
+			if(count == 0) {
+				top--;
+				continue;
+			}
+			int next = options[random.nextInt(count)];
+			visited[next] = true;
+			stack[top++] = next;
+			int nx = next % cellsX;
+			int ny = next / cellsX;
+			model.getTile(x + nx, y + ny).setNetwork(new Network(NetworkType.ROAD));
+			model.getTile(nx * 2, ny * 2).setNetwork(new Network(NetworkType.ROAD));
+		}
+		for(int x = 0; x < model.width; x++) {
+			for(int y = 0; y < model.height; y++) {
+				Tile tile = model.getTile(x, y);
+				if((x + y) % 2 == 1 && !tile.hasNetwork() && random.nextInt(50) == 0) {
+					tile.setNetwork(new Network(NetworkType.ROAD));
+				}
+			}
+		}
+	}
+
+	private static int randomRoad(GameModel model, Random random) {
+		while(true) {
+			Tile tile = model.getTile(random.nextInt(model.width), random.nextInt(model.height));
+			if(tile.hasNetwork()) {
+				return tile.getId();
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package com.left.addd.desktop;
+
+import java.util.Random;
+
+import com.left.addd.model.GameModel;
+import com.left.addd.model.Network;
+import com.left.addd.model.NetworkType;
+import com.left.addd.model.Tile;
+import com.left.addd.model.pathfinding.IncrementalPlanner;
+import com.left.addd.model.pathfinding.Path;
+import com.left.addd.model.pathfinding.PathFinder;
+
+/**
+ * Compares replanning from scratch with incremental replanning while roads are drag-edited
+ * across a busy map: first a new road is painted and erased, then a street is dug up and relaid.
+ * Every route is replanned after every single tile edit, the way entities would replan when
+ * they notice the network version changed. Both have to find routes as long as those of a plain
+ * {@link GridSearch} over the tiles, otherwise it exits with an error.
+ *
+ * Run with: PathfindingBenchmark [size] [routes] [seed]
+ */
+public class PathfindingBenchmark {
+	private static final int BLOCK = 8;
+	private static final int WINDOW = 256;
+	private static final int TRIP = 96;
+
+	public static void main(String[] arg) {
+		int size = arg.length > 0 ? Integer.parseInt(arg[0]) : 1024;
+		int routes = arg.length > 1 ? Integer.parseInt(arg[1]) : 200;
+		long seed = arg.length > 2 ? Long.parseLong(arg[2]) : 2015;
+		Random random = new Random(seed);
+
+		GameModel model = new GameModel(size, size, 0);
+		layStreets(model, random);
+		PathFinder pathFinder = model.getPathFinder();
+
+		// Routes crowd around the stroke, so most of them are affected by it
+		int stroke = size / 2 + BLOCK / 2;
+		int left = Math.max(0, size / 2 - WINDOW / 2);
+		int right = Math.min(size, left + WINDOW);
+		int[] starts = new int[routes];
+		int[] goals = new int[routes];
+		IncrementalPlanner[] planners = new IncrementalPlanner[routes];
+		Path path = new Path();
+		for(int i = 0; i < routes; i++) {
+			starts[i] = randomRoad(model, random, left, right, stroke - TRIP / 2, stroke + TRIP / 2);
+			int x = starts[i] % size;
+			int y = starts[i] / size;
+			goals[i] = randomRoad(model, random, x - TRIP, x + TRIP, y - TRIP, y + TRIP);
+			planners[i] = pathFinder.createPlanner();
+			planners[i].findPath(starts[i], goals[i], path);
+			pathFinder.findPath(starts[i], goals[i], path);
+		}
+
+		System.out.println("Map " + size + "x" + size + ", " + routes + " routes");
+		GridSearch reference = new GridSearch(model);
+		// A new road through the middle of a row of blocks, then a street dug up and relaid
+		int mismatches = stroke(model, reference, planners, starts, goals, stroke, left, right, false);
+		mismatches += stroke(model, reference, planners, starts, goals, stroke - BLOCK / 2, left, right, true);
+		if(mismatches > 0) {
+			System.out.println(mismatches + " routes differ");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Edits row y from left to right one tile at a time, then undoes it the same way,
+	 * replanning every route after each edit. Routes start over from their origins.
+	 *
+	 * @param dig Remove the road on the row first, instead of painting one.
+	 * @return Number of routes that weren't as long as the reference's.
+	 */
+	private static int stroke(GameModel model, GridSearch reference, IncrementalPlanner[] planners, int[] origins, int[] goals,
+			int y, int left, int right, boolean dig) {
+		PathFinder pathFinder = model.getPathFinder();
+		int[] starts = origins.clone();
+		Path scratch = new Path();
+		Path incremental = new Path();
+		Path expected = new Path();
+		long scratchTime = 0;
+		long incrementalTime = 0;
+		int mismatches = 0;
+		int referenceMismatches = 0;
+		int edits = 0;
+		boolean[] edited = new boolean[model.width];
+		for(int pass = 0; pass < 2; pass++) {
+			for(int x = left; x < right; x++) {
+				Tile tile = model.getTile(x, y);
+				boolean paint = (pass == 0) != dig;
+				if(pass == 0 && tile.hasNetwork() == dig) {
+					edited[x] = true;
+				} else if(pass == 0 || !edited[x]) {
+					continue;
+				}
+				if(paint) {
+					tile.setNetwork(new Network(NetworkType.ROAD));
+				} else {
+					tile.clearNetwork();
+				}
+				edits++;
+
+				long begin = System.nanoTime();
+				for(int i = 0; i < planners.length; i++) {
+					pathFinder.findPath(starts[i], goals[i], scratch);
+				}
+				scratchTime += System.nanoTime() - begin;
+
+				begin = System.nanoTime();
+				for(int i = 0; i < planners.length; i++) {
+					planners[i].findPath(starts[i], goals[i], incremental);
+				}
+				incrementalTime += System.nanoTime() - begin;
+
+				for(int i = 0; i < planners.length; i++) {
+					pathFinder.findPath(starts[i], goals[i], scratch);
+					planners[i].findPath(starts[i], goals[i], incremental);
+					reference.findPath(starts[i], goals[i], expected);
+					if(!sameLength(expected, scratch)) {
+						referenceMismatches++;
+					}
+					if(!sameLength(expected, incremental)) {
+						mismatches++;
+					}
+					// Entities keep walking while the road is edited
+					if(incremental.hasNext()) {
+						incremental.next(model.width);
+						starts[i] = incremental.getPosition();
+					}
+				}
+			}
+		}
+
+		System.out.println((dig ? "Dig up" : "Paint") + " row " + y + ", " + edits + " edits");
+		System.out.println("  From scratch: " + (scratchTime / 1000000) + " ms");
+		System.out.println("  Incremental:  " + (incrementalTime / 1000000) + " ms");
+		System.out.println("  Length mismatches: " + mismatches + " incremental, " + referenceMismatches + " from scratch");
+		return mismatches + referenceMismatches;
+	}
+
+	private static boolean sameLength(Path expected, Path actual) {
+		return expected.isReachable() == actual.isReachable() && expected.getLength() == actual.getLength();
+	}
+
+	/**
+	 * Lays a street every BLOCK tiles in both directions, with a few gaps so not every block is a ring.
+	 */
+	private static void layStreets(GameModel model, Random random) {
+		for(int x = 0; x < model.width; x++) {
+			for(int y = 0; y < model.height; y++) {
+				if((x % BLOCK == 0 || y % BLOCK == 0) && random.nextInt(40) != 0) {
+					model.getTile(x, y).setNetwork(new Network(NetworkType.ROAD));
+				}
+			}
+		}
+	}
+
+	private static int randomRoad(GameModel model, Random random, int minX, int maxX, int minY, int maxY) {
+		minX = Math.max(0, minX);
+		minY = Math.max(0, minY);
+		maxX = Math.min(model.width, maxX);
+		maxY = Math.min(model.height, maxY);
+		while(true) {
+			int x = minX + random.nextInt(maxX - minX);
+			int y = minY + random.nextInt(maxY - minY);
+			Tile tile = model.getTile(x, y);
+			if(tile.hasNetwork()) {
+				return tile.getId();
+			}
+		}
+	}
+}
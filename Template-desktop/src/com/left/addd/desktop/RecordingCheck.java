@@ -0,0 +1,83 @@
+package com.left.addd.desktop;
+
+import java.util.Random;
+
+import com.left.addd.model.GameModel;
+import com.left.addd.model.Recording;
+import com.left.addd.model.RecordingSimulation;
+import com.left.addd.model.Simulation;
+import com.left.addd.model.SynchronousSimulation;
+import com.left.addd.model.ToggleRoad;
+import com.left.addd.model.pathfinding.PathSolver;
+import com.left.addd.model.pathfinding.SynchronousPathSolver;
+import com.left.addd.services.GameSerializer;
+import com.left.addd.utils.LoadingException;
+
+/**
+ * Checks that a replay does what the session it was recorded from did, which is what makes
+ * {@link ReplayRunner} times comparable: plays scripted sessions on the test map with uneven frames,
+ * some of them without ticks, and the player toggling roads, records them as the game does,
+ * then replays each one as {@link ReplayRunner} does and compares the checksums.
+ * Every session is played once with the path solver of HTML and once with the threaded one of desktop.
+ *
+ * Run with: RecordingCheck [sessions] [frames] [seed]
+ */
+public class RecordingCheck {
+	private static final int SIZE = 15;
+	/** One frame in this many toggles a road */
+	private static final int TOGGLES = 10;
+	/** One frame in this many runs no ticks */
+	private static final int IDLE = 4;
+	/** Longest frame in game hours */
+	private static final float LONGEST = 2.5f;
+
+	public static void main(String[] arg) throws LoadingException {
+		int sessions = arg.length > 0 ? Integer.parseInt(arg[0]) : 6;
+		int frames = arg.length > 1 ? Integer.parseInt(arg[1]) : 3000;
+		long seed = arg.length > 2 ? Long.parseLong(arg[2]) : 2015;
+
+		PathSolver.Factory[] solvers = { new SynchronousPathSolver.Factory(), new ThreadedPathSolver.Factory(2) };
+		String[] names = { "synchronous", "threaded" };
+		GameSerializer serializer = new GameSerializer();
+		int mismatches = 0;
+		for(int s = 0; s < solvers.length; s++) {
+			for(int session = 0; session < sessions; session++) {
+				GameModel live = new GameModel(SIZE, SIZE);
+				live.getPathFinder().setSolver(solvers[s]);
+				Recording recording = new Recording(null, live.getTime().getTime());
+				play(live, recording, frames, new Random(seed + session));
+				live.dispose();
+
+				Recording back = serializer.readRecording(serializer.writeRecording(recording));
+				GameModel replay = serializer.createModel(back);
+				back.replay(replay);
+				replay.dispose();
+
+				long expected = HeadlessRunner.checksum(live);
+				long actual = HeadlessRunner.checksum(replay);
+				boolean same = expected == actual && live.getTime().getTime() == replay.getTime().getTime();
+				if(!same) {
+					mismatches++;
+				}
+				System.out.println(names[s] + " session " + (session + 1) + ": " + recording.getEvents().size()
+						+ " commands, up to hour " + recording.getEnd() + ", live " + Long.toHexString(expected)
+						+ ", replay " + Long.toHexString(actual) + (same ? "" : " DIFFERENT"));
+			}
+		}
+		System.out.println(mismatches == 0 ? "Identical" : mismatches + " sessions differ");
+		if(mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static void play(GameModel model, Recording recording, int frames, Random random) {
+		Simulation simulation = new RecordingSimulation(new SynchronousSimulation(model), recording);
+		for(int i = 0; i < frames; i++) {
+			if(random.nextInt(TOGGLES) == 0) {
+				simulation.post(new ToggleRoad(random.nextInt(SIZE), random.nextInt(SIZE)));
+			}
+			simulation.update(random.nextInt(IDLE) == 0 ? 0 : random.nextFloat() * LONGEST);
+		}
+		simulation.dispose();
+	}
+}
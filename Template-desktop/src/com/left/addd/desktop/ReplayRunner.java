@@ -0,0 +1,53 @@
+package com.left.addd.desktop;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.left.addd.model.GameModel;
+import com.left.addd.model.Recording;
+import com.left.addd.services.GameSerializer;
+import com.left.addd.utils.LoadingException;
+
+/**
+ * Plays a recorded session again as fast as it goes, without a window or a libGDX application,
+ * and reports how many ticks a second it managed and the same checksum as the {@link HeadlessRunner}.
+ * Every replay of a recording does exactly the same work, so the times of two builds can be compared,
+ * and their checksums should match unless the change was meant to change the game.
+ * Sessions are recorded by starting the game with --record.
+ *
+ * Run with: ReplayRunner recording [runs] [threads]
+ * where runs is how many times to replay it, each against a fresh model,
+ * and threads is how many threads plan the entities, 0 to update them one after the other.
+ */
+public class ReplayRunner {
+
+	public static void main(String[] arg) throws IOException, LoadingException {
+		if(arg.length < 1) {
+			System.out.println("Run with: ReplayRunner recording [runs] [threads]");
+			return;
+		}
+		int runs = arg.length > 1 ? Integer.parseInt(arg[1]) : 1;
+		int threads = arg.length > 2 ? Integer.parseInt(arg[2]) : 0;
+
+		GameSerializer serializer = new GameSerializer();
+		Recording recording = serializer.readRecording(HeadlessRunner.readFile(new File(arg[0])));
+		System.out.println("Loaded " + arg[0] + ", " + recording.getEvents().size() + " commands, up to hour "
+				+ recording.getEnd() + (threads > 0 ? ", planned on " + threads + " threads" : ""));
+
+		for(int run = 1; run <= runs; run++) {
+			GameModel model = serializer.createModel(recording);
+			if(threads > 0) {
+				model.setEntityPlanner(new ThreadedEntityPlanner.Factory(threads));
+			}
+			long ticks = recording.getEnd() - model.getTime().getTime();
+			long begin = System.nanoTime();
+			recording.replay(model);
+			long running = System.nanoTime() - begin;
+			model.dispose();
+
+			System.out.println("Run " + run + ": " + ticks + " ticks in " + (running / 1000000) + " ms, "
+					+ HeadlessRunner.rate((int) ticks, running) + " ticks/s");
+			HeadlessRunner.report(model);
+		}
+	}
+}
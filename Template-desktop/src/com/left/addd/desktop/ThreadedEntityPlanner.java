@@ -0,0 +1,105 @@
+package com.left.addd.desktop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.left.addd.model.Entity;
+import com.left.addd.services.EntityPlanner;
+
+/**
+ * Plans the arrivals of a tick on a pool of worker threads, one slice of the entities each,
+ * while the thread updating the model plans a slice of its own.
+ * Every entity only writes its own plan, so the workers share nothing but what they read.
+ */
+public class ThreadedEntityPlanner implements EntityPlanner {
+	/** Planning an entity is quick, so fewer than this per thread isn't worth spreading out */
+	private static final int MIN_SLICE = 512;
+
+	private final ExecutorService pool;
+	private final int threads;
+	private final List<Future<?>> running;
+
+	/**
+	 * @param threads Threads planning, the one updating the model included
+	 */
+	public ThreadedEntityPlanner(int threads) {
+		this.threads = Math.max(1, threads);
+		this.pool = Executors.newFixedThreadPool(Math.max(1, this.threads - 1), new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "EntityPlanner-" + (count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.running = new ArrayList<Future<?>>(this.threads);
+	}
+
+	@Override
+	public void plan(final List<Entity> entities) {
+		int size = entities.size();
+		int slices = Math.max(1, Math.min(threads, size / MIN_SLICE));
+		for(int i = 1; i < slices; i++) {
+			final int from = size * i / slices;
+			final int to = size * (i + 1) / slices;
+			running.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					plan(entities, from, to);
+				}
+			}));
+		}
+		plan(entities, 0, size / slices);
+		try {
+			for(Future<?> slice: running) {
+				slice.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException("Interrupted while planning entities", e);
+		} catch(ExecutionException e) {
+			throw new GdxRuntimeException("Planning entities failed", e.getCause());
+		} finally {
+			running.clear();
+		}
+	}
+
+	private static void plan(List<Entity> entities, int from, int to) {
+		for(int i = from; i < to; i++) {
+			entities.get(i).plan();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		pool.shutdownNow();
+	}
+
+	public static class Factory implements EntityPlanner.Factory {
+		private final int threads;
+
+		/**
+		 * Uses every core.
+		 */
+		public Factory() {
+			this(Runtime.getRuntime().availableProcessors());
+		}
+
+		public Factory(int threads) {
+			this.threads = threads;
+		}
+
+		@Override
+		public EntityPlanner create() {
+			return new ThreadedEntityPlanner(threads);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.left.addd.desktop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.left.addd.model.pathfinding.PathRequest;
+import com.left.addd.model.pathfinding.PathSolver;
+import com.left.addd.model.pathfinding.RoadGraph;
+import com.left.addd.model.pathfinding.RoadSearch;
+
+/**
+ * Solves each batch on a pool of worker threads while the frame is drawn.
+ * The batch is cut into one slice per worker and every worker has its own RoadSearch,
+ * so they only share the road graph, which nobody changes until the batch is finished.
+ */
+public class ThreadedPathSolver implements PathSolver {
+	/** Batches smaller than this per worker aren't worth spreading out */
+	private static final int MIN_SLICE = 16;
+
+	private final ExecutorService pool;
+	private final RoadSearch[] searches;
+	private final List<Future<?>> running;
+
+	public ThreadedPathSolver(RoadGraph graph, int threads) {
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "PathSolver-" + (count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.searches = new RoadSearch[threads];
+		for(int i = 0; i < threads; i++) {
+			searches[i] = new RoadSearch(graph);
+		}
+		this.running = new ArrayList<Future<?>>(threads);
+	}
+
+	@Override
+	public void start(final List<PathRequest> batch) {
+		int size = batch.size();
+		int slices = Math.max(1, Math.min(searches.length, size / MIN_SLICE));
+		for(int i = 0; i < slices; i++) {
+			final int from = size * i / slices;
+			final int to = size * (i + 1) / slices;
+			final RoadSearch search = searches[i];
+			running.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					for(int j = from; j < to; j++) {
+						batch.get(j).solve(search);
+					}
+				}
+			}));
+		}
+	}
+
+	@Override
+	public void update() {
+		// The workers don't need the render thread
+	}
+
+	@Override
+	public void finish() {
+		try {
+			for(Future<?> slice: running) {
+				slice.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException("Interrupted while waiting for paths", e);
+		} catch(ExecutionException e) {
+			throw new GdxRuntimeException("Path search failed", e.getCause());
+		} finally {
+			running.clear();
+		}
+	}
+
+	@Override
+	public void roadsChanging() {
+		finish();
+	}
+
+	@Override
+	public void dispose() {
+		pool.shutdownNow();
+	}
+
+	public static class Factory implements PathSolver.Factory {
+		private final int threads;
+
+		/**
+		 * Uses every core but the one drawing the frames.
+		 */
+		public Factory() {
+			this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+		}
+
+		public Factory(int threads) {
+			this.threads = threads;
+		}
+
+		@Override
+		public PathSolver create(RoadGraph graph) {
+			return new ThreadedPathSolver(graph, threads);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.left.addd.desktop;
+
+import java.util.ArrayList;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.left.addd.model.GameModel;
+import com.left.addd.model.GameSnapshot;
+import com.left.addd.model.Simulation;
+
+/**
+ * Updates the model on a thread of its own, so long ticks don't hold up the frames.
+ * The render thread only adds to the time owed and queues commands, and picks up
+ * the latest snapshot without waiting. The simulation thread takes whatever time is owed,
+ * runs the commands and then the model, and publishes a new snapshot whenever a command or a tick ran.
+ * If it falls behind, the time owed piles up and is paid out as ticks up to the model's catch-up cap.
+ */
+public class ThreadedSimulation implements Simulation {
+	private final GameModel model;
+	private final Thread thread;
+	/** Guards owed, commands and stopped */
+	private final Object lock;
+	private float owed;
+	private final ArrayList<Command> commands;
+	private boolean stopped;
+	/** Commands taken over by the simulation thread */
+	private final ArrayList<Command> running;
+	private volatile GameSnapshot snapshot;
+	private volatile Throwable failure;
+
+	public ThreadedSimulation(GameModel model) {
+		this.model = model;
+		this.lock = new Object();
+		this.owed = 0;
+		this.commands = new ArrayList<Command>();
+		this.stopped = false;
+		this.running = new ArrayList<Command>();
+		this.snapshot = GameSnapshot.take(model, null);
+		this.failure = null;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				loop();
+			}
+		}, "Simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void update(float delta) {
+		if(failure != null) {
+			throw new GdxRuntimeException("Simulation failed", failure);
+		}
+		if(delta <= 0) {
+			return;
+		}
+		synchronized(lock) {
+			owed += delta;
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void post(Command command) {
+		synchronized(lock) {
+			commands.add(command);
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public GameSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public void dispose() {
+		synchronized(lock) {
+			stopped = true;
+			lock.notifyAll();
+		}
+		try {
+			thread.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void loop() {
+		try {
+			while(true) {
+				float delta;
+				synchronized(lock) {
+					while(!stopped && owed == 0 && commands.isEmpty()) {
+						lock.wait();
+					}
+					if(stopped) {
+						return;
+					}
+					delta = owed;
+					owed = 0;
+					running.addAll(commands);
+					commands.clear();
+				}
+				boolean changed = !running.isEmpty();
+				for(int i = 0; i < running.size(); i++) {
+					running.get(i).run(model);
+				}
+				running.clear();
+				if(delta > 0 && model.update(delta) > 0) {
+					changed = true;
+				}
+				if(changed) {
+					snapshot = GameSnapshot.take(model, snapshot);
+				}
+			}
+		} catch(InterruptedException e) {
+			// Stopped
+		} catch(Throwable t) {
+			// Thrown on the render thread at its next update
+			failure = t;
+		}
+	}
+
+	public static class Factory implements Simulation.Factory {
+		@Override
+		public Simulation create(GameModel model) {
+			return new ThreadedSimulation(model);
+		}
+	}
+}